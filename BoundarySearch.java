@@ -0,0 +1,246 @@
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A handle on a search started by
+ *  {@link RhombBoundary#allValid(int[],boolean,java.util.List,int[],int[],ResultSink,boolean,String,boolean)}.  
+ *  The search runs in the background; this lets us see how far it has
+ *  got, stop it, or wait for it to finish.  
+ *  The permutations searched are indexed by their ranks, as in
+ *  {@link MultiSetPermutation}, so progress is measured by the number of
+ *  ranks that have been searched.  
+ */
+public class BoundarySearch {
+
+    /** The number of permutations in the search.  */
+    private final long total;
+    /** The number of permutations searched so far.  */
+    private final AtomicLong searched;
+    /** The number of valid sequences sent to the sink so far.  */
+    private final AtomicLong found;
+    /** The number of permutations that were already searched when we started.  */
+    private final long initialSearched;
+    /** When we started, in nanoseconds.  */
+    private final long startTime;
+    /** When we finished, in nanoseconds, or 0 if we haven't.  */
+    private volatile long endTime;
+    /** Has anyone asked us to stop?  */
+    private volatile boolean cancelled;
+    /** Was part of the range left unsearched because of an error?  */
+    private volatile boolean failed;
+    /** The task doing the search.  */
+    private volatile Future<Long> task;
+
+    // private constructor
+    private BoundarySearch(long total, long searched, long found) {
+        this.total = total;
+        this.searched = new AtomicLong(searched);
+        this.found = new AtomicLong(found);
+        this.initialSearched = searched;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @param total The number of permutations in the search.  
+     *  @param searched The number of permutations that have already been
+     *  searched, if we are resuming a search.  
+     *  @param found The number of valid sequences that have already been
+     *  found, if we are resuming a search.  
+     *  @return A handle for a search that hasn't started yet.  
+     */
+    public static BoundarySearch createBoundarySearch(long total, long searched, long found) {
+        return new BoundarySearch(total,searched,found);
+    }
+
+    /**
+     *  Tell this which task is doing the search.  
+     *  @param task The task doing the search.  
+     */
+    void start(Future<Long> task) {
+        this.task = task;
+    }
+
+    /**
+     *  Record that some permutations have been searched.  
+     *  @param searched The number of permutations searched.  
+     *  @param found The number of valid sequences found among them.  
+     */
+    void record(long searched, long found) {
+        this.searched.addAndGet(searched);
+        this.found.addAndGet(found);
+    }
+
+    /**
+     *  Record that the search has stopped, either because it is
+     *  finished or because it was cancelled.  
+     */
+    void finish() {
+        endTime = System.nanoTime();
+    }
+
+    /**
+     *  Record that part of the range couldn't be searched, so the
+     *  results are incomplete.  
+     */
+    void fail() {
+        failed = true;
+    }
+
+    /**
+     *  Did the search stop without searching its whole range?  
+     *  @return true if part of the range couldn't be searched because
+     *  of an error.  
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     *  Stop the search.  The work units that are running stop at the
+     *  next permutation, and report how far they got, so if the search
+     *  is keeping a {@link SearchCheckpoint} it can be resumed later.  
+     *  This returns straight away; use {@link #awaitResults()} to wait
+     *  for the search to stop.  
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     *  Has anyone asked the search to stop?  
+     *  @return true if {@link #cancel()} has been called.  
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     *  Has the search stopped?  
+     *  @return true if the search has finished, failed or been cancelled, and
+     *  the sink has been told that it's done.  
+     */
+    public boolean isDone() {
+        return endTime != 0;
+    }
+
+    /**
+     *  How far has the search got?  
+     *  @return A snapshot of the progress of the search.  
+     */
+    public Progress progress() {
+        long end = endTime;
+        long elapsed = ((end == 0) ? System.nanoTime() : end) - startTime;
+        long s = searched.get();
+        double rate = (elapsed > 0) ? (s - initialSearched) * 1e9 / elapsed : 0.0;
+        return new Progress(s,total,found.get(),rate);
+    }
+
+    /**
+     *  Wait until the search stops.  
+     *  If we are interrupted while waiting, we cancel the search.  
+     *  @return The number of valid sequences sent to the sink.  
+     */
+    public long awaitResults() {
+        return awaitResults(null);
+    }
+
+    /**
+     *  Wait until the search stops, printing its progress every
+     *  250 milliseconds.  
+     *  If we are interrupted while waiting, we cancel the search.  
+     *  @param out Where we print the progress, or null if we don't.  
+     *  @return The number of valid sequences sent to the sink.  
+     */
+    public long awaitResults(PrintStream out) {
+        while (true) {
+            try {
+                task.get(250L,TimeUnit.MILLISECONDS);
+                break;
+            }
+            catch (TimeoutException e) {
+                if (out != null) out.print(progress() + "\r");
+            }
+            catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (CancellationException e) {
+                break;
+            }
+            catch (ExecutionException e) {
+                e.printStackTrace();
+                break;
+            }
+        }
+        return found.get();
+    }
+
+    /**
+     *  Output a String representation of this.  
+     *  @return A String describing the progress of the search.  
+     */
+    public String toString() {
+        return progress().toString();
+    }
+
+    /**
+     *  A snapshot of the progress of a search.  
+     */
+    public static class Progress {
+
+        /** The number of permutations searched.  */
+        private final long searched;
+        /** The number of permutations in the search.  */
+        private final long total;
+        /** The number of valid sequences found.  */
+        private final long found;
+        /** The number of permutations searched per second.  */
+        private final double rate;
+
+        // private constructor
+        private Progress(long searched, long total, long found, double rate) {
+            this.searched = searched;
+            this.total = total;
+            this.found = found;
+            this.rate = rate;
+        }
+
+        /** Getter method.  */
+        public long getSearched() {
+            return searched;
+        }
+
+        /** Getter method.  */
+        public long getTotal() {
+            return total;
+        }
+
+        /** Getter method.  */
+        public long getFound() {
+            return found;
+        }
+
+        /**
+         *  The number of permutations searched per second since the
+         *  search started (not counting those searched before it was
+         *  resumed).  
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         *  Output a String representation of this.  
+         *  @return A String containing the number of permutations
+         *  searched, the number of valid sequences and the rate.  
+         */
+        public String toString() {
+            return String.format("%d of %d permutations searched, %d results, %.0f per second", searched, total, found, rate);
+        }
+
+    } // end of class Progress
+
+} // end of class BoundarySearch
@@ -166,23 +166,36 @@ public class FileManager {
      * @param patch The PatchDisplay to be depicted in the file.  
      */
     public static void postscriptDump(String fileName, PatchDisplay patch) {
-        postscriptHeader(fileName,patch.boundingBox());
+        postscriptDump(fileName,patch.snapshot());
+    } // end of method postscriptDump
+
+    /**
+     * Write a patch to a postscript file, from a copy of it.  
+     * This doesn't look at the PatchDisplay, so it can run on another 
+     * thread while the user carries on editing.  
+     * @param fileName The name of the file on which to write.  
+     * @param patch A copy of the PatchDisplay to be depicted in the file.  
+     */
+    public static void postscriptDump(String fileName, PatchDisplay.Snapshot patch) {
+        postscriptDump(fileName,patch.boundingBox(),postscriptBody(patch));
+    } // end of method postscriptDump
+
+    /**
+     * Write a patch to a postscript file, where the drawing instructions 
+     * have already been produced by {@link #postscriptBody(PatchDisplay)}.  
+     * This doesn't look at the PatchDisplay, so it can run on another 
+     * thread while the user carries on editing.  
+     * @param fileName The name of the file on which to write.  
+     * @param box The bounding box of the patch, from 
+     * {@link PatchDisplay#boundingBox()}.  
+     * @param body The drawing instructions for the patch.  
+     */
+    public static void postscriptDump(String fileName, String box, String body) {
+        postscriptHeader(fileName,box);
         PrintWriter out = null;
         try {
             out = new PrintWriter(new FileWriter(fileName, true));
-            if (patch.supertiles) {
-                out.write("% instructions for drawing supertiles\n");
-                for (int i = 0; i < Point.N()/2; i++) out.write(patch.supertile(i));
-            }
-            if (Math.abs(patch.getRotation())>0) out.write((patch.getRotation()*180/Math.PI) + " rotate\n\n");
-            out.write("% a list of all tiles\n");
-            for (SimpleRhomb r : patch.getPatch()) out.write(r.postscriptString()+"\n");
-            if (patch.supertiles) {
-                out.write("\n% a list of all supertiles\n");
-                out.write("0.2 setlinewidth\n");
-                for (SimpleRhomb s : patch.getSupertiles()) out.write(patch.supertilePostscriptString(s)+"\n");
-            }
-            out.write("showpage");
+            out.write(body);
         } catch ( Exception e ) {
             System.out.println(e);
         } finally {
@@ -194,6 +207,43 @@ public class FileManager {
         }
     } // end of method postscriptDump
 
+    /**
+     * Produce the postscript instructions for drawing a patch, 
+     * which come after the header in a postscript file.  
+     * @param patch The PatchDisplay to be depicted.  
+     * @return The instructions for drawing the tiles (and supertiles, 
+     * if they're showing) of patch.  
+     */
+    public static String postscriptBody(PatchDisplay patch) {
+        return postscriptBody(patch.snapshot());
+    } // end of method postscriptBody
+
+    /**
+     * Produce the postscript instructions for drawing a patch, from a 
+     * copy of it.  This doesn't look at the PatchDisplay, so it can run 
+     * on another thread while the user carries on editing.  
+     * @param patch A copy of the PatchDisplay to be depicted.  
+     * @return The instructions for drawing the tiles (and supertiles, 
+     * if they're showing) of patch.  
+     */
+    public static String postscriptBody(PatchDisplay.Snapshot patch) {
+        StringBuilder out = new StringBuilder();
+        if (patch.supertiles) {
+            out.append("% instructions for drawing supertiles\n");
+            for (int i = 0; i < Point.N()/2; i++) out.append(patch.supertile(i));
+        }
+        if (Math.abs(patch.getRotation())>0) out.append((patch.getRotation()*180/Math.PI) + " rotate\n\n");
+        out.append("% a list of all tiles\n");
+        for (SimpleRhomb r : patch.getPatch()) out.append(r.postscriptString()+"\n");
+        if (patch.supertiles) {
+            out.append("\n% a list of all supertiles\n");
+            out.append("0.2 setlinewidth\n");
+            for (SimpleRhomb s : patch.getSupertiles()) out.append(patch.supertilePostscriptString(s)+"\n");
+        }
+        out.append("showpage");
+        return out.toString();
+    } // end of method postscriptBody
+
     /**
      * Load a RhombBoundary from the file with the given name.  
      * @param filename The name of the file from which to load.  
@@ -274,6 +324,89 @@ public class FileManager {
         }
     }
 
+    /**
+     * Serialize a {@link SubstitutionEditorSaveState}, so that it can be 
+     * written to a file later by {@link #saveSubstitutionEditor(String,byte[])} 
+     * without worrying about the editor changing in the meantime.  
+     * @param state The {@link SubstitutionEditor} to be saved.  
+     * @return The serialized state, or null if it can't be serialized.  
+     */
+    public static byte[] snapshot(SubstitutionEditorSaveState state) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(state);
+            out.close();
+            return bytes.toByteArray();
+        } catch (Exception e) {
+            System.out.println("\nError while saving rhomb boundary.");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Save a {@link SubstitutionEditorSaveState} that has already been 
+     * serialized by {@link #snapshot(SubstitutionEditorSaveState)} to the 
+     * file with the given name.  The file is the same as the one written 
+     * by {@link #saveSubstitutionEditor(String,SubstitutionEditorSaveState)}.  
+     * @param filename The name of the file to which to save.  
+     * @param snapshot The serialized state.  
+     */
+    public static void saveSubstitutionEditor(String filename,byte[] snapshot) {
+        try {
+            FileOutputStream fileOut = new FileOutputStream(filename);
+            fileOut.write(snapshot);
+            fileOut.close();
+        } catch (Exception e) {
+            System.out.println("\nError while saving rhomb boundary.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Load a {@link SearchCheckpoint} from the file with the given name.  
+     * @param filename The name of the file from which to load.  
+     * @return The SearchCheckpoint, or null if it can't be read.  
+     */
+    public static SearchCheckpoint loadSearchCheckpoint(String filename) {
+        if ( ! new File(filename).isFile() ) {
+            System.out.println(filename + " not found!");
+            return null;
+        }
+        SearchCheckpoint output = null;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            output = (SearchCheckpoint)in.readObject();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return output;
+    }
+
+    /**
+     * Save a {@link SearchCheckpoint} to the file with the given name.  
+     * We write to a temporary file first and then rename it, so that 
+     * the old checkpoint survives if we are killed while saving.  
+     * @param filename The name of the file to which to save.  
+     * @param checkpoint The SearchCheckpoint to be saved.  
+     */
+    public static void saveSearchCheckpoint(String filename, SearchCheckpoint checkpoint) {
+        File temp = new File(filename + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeObject(checkpoint);
+        } catch (Exception e) {
+            System.out.println("\nError while saving search checkpoint.");
+            e.printStackTrace();
+            return;
+        }
+        try {
+            java.nio.file.Files.move(temp.toPath(),new File(filename).toPath(),java.nio.file.StandardCopyOption.REPLACE_EXISTING,java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("\nError while saving search checkpoint.");
+            e.printStackTrace();
+        }
+    }
+
     /**
      *  Read an edge sequence list from a file in ./edges
      *  @param n The value of {@link Point#N()} for which to read 
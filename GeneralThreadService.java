@@ -9,6 +9,13 @@ import java.io.*;
  */
 public class GeneralThreadService {
 
+    /**
+     *  Makes a virtual thread for each job, if this version of Java
+     *  has virtual threads, and null otherwise.  We look it up
+     *  by reflection so that we still run on older versions.  This
+     *  has to come before {@link #INSTANCE}, whose constructor reads it.  
+     */
+    private static final java.lang.reflect.Method NEW_VIRTUAL_EXECUTOR = findVirtualExecutor();
     /**
      *  The unique instance of this class.  
      */
@@ -18,40 +25,246 @@ public class GeneralThreadService {
      */
     public final int NUMBER_OF_THREADS         = Runtime.getRuntime().availableProcessors();
     /**
-     *  How many jobs can wait in the queue at a time?  
+     *  How many jobs can wait in the queue of a pool for each of its
+     *  threads.  Anyone who submits more than this has to wait until
+     *  some of the jobs already submitted have finished.  
+     */
+    public static final int JOBS_PER_THREAD    = 4;
+    /**
+     *  How many I/O jobs can be queued or running at a time.  
+     */
+    public static final int IO_JOB_CAPACITY    = 64;
+
+    /**
+     *  The kinds of job that we run.  Each kind has its own pool of
+     *  threads, so that a long search doesn't hold up saving a file.  
      */
-    public static final int JOB_CAPACITY       = 10000000;
+    public static enum JobType {
+        /** Jobs that do calculations, such as searches.  */
+        SEARCH,
+        /** Jobs that read or write files.  */
+        IO
+    }
 
-    private final CustomThreadPoolExecutor executorService;
+    /**
+     *  The kinds of thread that a pool can use.  
+     */
+    public static enum ExecutionMode {
+        /**
+         *  A fixed number of ordinary threads.  This is best for jobs
+         *  that keep a processor busy.  
+         */
+        PLATFORM,
+        /**
+         *  A new virtual thread for each job.  This is best for jobs that
+         *  spend most of their time waiting for files.  Virtual threads
+         *  need Java 21 or later; on older versions we use
+         *  {@link #PLATFORM} instead.  
+         */
+        VIRTUAL
+    }
+
+    /**
+     *  A work-stealing pool for jobs that split themselves into smaller 
+     *  jobs, such as searches over ranges of permutations.  
+     */
+    private final ForkJoinPool forkJoinPool;
+
+    /** The pool for each kind of job.  */
+    private final EnumMap<JobType,ExecutorService> executors;
+
+    /** The kind of thread used by the pool for each kind of job.  */
+    private final EnumMap<JobType,ExecutionMode> modes;
+
+    /**
+     *  How many more jobs of each kind can be submitted before the
+     *  submitter has to wait.  A permit is taken when a job is submitted
+     *  and given back when it finishes, so the number of jobs that are
+     *  queued or running never exceeds the number of permits.  
+     */
+    private final EnumMap<JobType,Semaphore> permits;
 
     private GeneralThreadService()
     {
-        // create a thread pool that has exactly NUMBER_OF_THREADS threads
-        // when started, the executor service will create threads up to NUMBER_OF_THREADS
+        // create a thread pool for each kind of job
+        // when started, the executor service will create threads up to the size of the pool
         // these threads will be kept running until the service is shut down
-        // if more than JOB_CAPACITY jobs is placed in the queue, then the rejected execution policy will decide what happens
-        // the "caller runs policy" returns the excess work to the calling thread
+        // the queues are unbounded lock-free queues, but submit() won't put
+        // more than JOBS_PER_THREAD jobs per thread in them, so they stay small
+        // and a producer that gets ahead of the pool waits instead of
+        // running the work itself
 
         // threads only created on demand
 
-        executorService = new CustomThreadPoolExecutor(NUMBER_OF_THREADS,                                     // core pool size
-                                                       NUMBER_OF_THREADS,                                     // maximum pool size
-                                                       1L,                                                    // keep alive time
-                                                       TimeUnit.MINUTES,                                      // keep alive time unit
-                                                       new ArrayBlockingQueue<Runnable>(JOB_CAPACITY,true),   // work queue
-                                                       new CustomThreadFactory("thread pool"),                // thread factory
-                                                       new ThreadPoolExecutor.CallerRunsPolicy());            // rejected execution policy
+        executors = new EnumMap<>(JobType.class);
+        modes = new EnumMap<>(JobType.class);
+        permits = new EnumMap<>(JobType.class);
+        for (JobType type : JobType.values()) {
+            ExecutionMode mode = (type == JobType.IO) ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+            if (NEW_VIRTUAL_EXECUTOR == null) mode = ExecutionMode.PLATFORM;
+            modes.put(type, mode);
+            executors.put(type, createExecutor(type, mode));
+            permits.put(type, new Semaphore((type == JobType.IO) ? IO_JOB_CAPACITY : NUMBER_OF_THREADS * (JOBS_PER_THREAD + 1)));
+        }
+
+        // idle threads in this pool steal queued subtasks from busy ones
+        forkJoinPool = new ForkJoinPool(NUMBER_OF_THREADS);
+    }
+
+    /**
+     *  Find the method that makes virtual threads.  
+     *  @return Executors.newVirtualThreadPerTaskExecutor(), or null if
+     *  this version of Java doesn't have virtual threads.  
+     */
+    private static java.lang.reflect.Method findVirtualExecutor()
+    {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     *  Make a pool for a given kind of job.  
+     */
+    private ExecutorService createExecutor(JobType type, ExecutionMode mode)
+    {
+        if (mode == ExecutionMode.VIRTUAL) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Can't make virtual threads.", e);
+            }
+        }
+        int threads = (type == JobType.IO) ? 1 : NUMBER_OF_THREADS;
+        return new CustomThreadPoolExecutor(threads,                                       // core pool size
+                                            threads,                                       // maximum pool size
+                                            1L,                                            // keep alive time
+                                            TimeUnit.MINUTES,                              // keep alive time unit
+                                            new LinkedTransferQueue<Runnable>(),           // work queue
+                                            new CustomThreadFactory(type.toString().toLowerCase()),  // thread factory
+                                            new ThreadPoolExecutor.AbortPolicy());         // rejected execution policy
+    }
+
+    /**
+     *  Can we use virtual threads?  
+     *  @return true if this version of Java has virtual threads.  
+     */
+    public static boolean virtualThreadsAvailable()
+    {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     *  The kind of thread that runs a given kind of job.  
+     *  @param type The kind of job.  
+     *  @return The execution mode of the pool for that kind of job.  
+     */
+    public synchronized ExecutionMode getExecutionMode(JobType type)
+    {
+        return modes.get(type);
     }
 
-    public CustomThreadPoolExecutor getExecutor()
+    /**
+     *  Change the kind of thread that runs a given kind of job.  
+     *  Jobs that have already been submitted finish on the old pool.  
+     *  If virtual threads aren't available, {@link ExecutionMode#VIRTUAL}
+     *  means {@link ExecutionMode#PLATFORM}.  
+     *  @param type The kind of job.  
+     *  @param mode The kind of thread to use for it.  
+     */
+    public synchronized void setExecutionMode(JobType type, ExecutionMode mode)
     {
-        return executorService;
+        if (mode == ExecutionMode.VIRTUAL && NEW_VIRTUAL_EXECUTOR == null) mode = ExecutionMode.PLATFORM;
+        if (modes.get(type) == mode) return;
+        ExecutorService old = executors.get(type);
+        executors.put(type, createExecutor(type, mode));
+        modes.put(type, mode);
+        old.shutdown();
+    }
+
+    /**
+     *  The pool for a given kind of job.  
+     *  @param type The kind of job.  
+     *  @return The pool that runs jobs of that kind.  
+     */
+    public synchronized ExecutorService getExecutor(JobType type)
+    {
+        return executors.get(type);
+    }
+
+    public ForkJoinPool getForkJoinPool()
+    {
+        return forkJoinPool;
+    }
+
+    /**
+     *  Submit a job, waiting first if too many jobs of the same kind
+     *  are queued or running.  
+     *  @param type The kind of job.  
+     *  @param job The job.  
+     *  @return A Future for the result of the job.  
+     *  @throws InterruptedException If we're interrupted while waiting.  
+     */
+    public <T> Future<T> submit(JobType type, Callable<T> job) throws InterruptedException
+    {
+        permits.get(type).acquire();
+        return execute(type, job);
+    }
+
+    /**
+     *  Submit a job with no result, waiting first if too many jobs of
+     *  the same kind are queued or running.  
+     *  @param type The kind of job.  
+     *  @param job The job.  
+     *  @return A Future that tells us when the job is finished.  
+     *  @throws InterruptedException If we're interrupted while waiting.  
+     */
+    public Future<?> submit(JobType type, Runnable job) throws InterruptedException
+    {
+        return submit(type, Executors.callable(job));
+    }
+
+    /**
+     *  Submit a job if there is room for it without waiting.  
+     *  @param type The kind of job.  
+     *  @param job The job.  
+     *  @return A Future for the result of the job, or null if
+     *  too many jobs of the same kind are queued or running.  
+     */
+    public <T> Future<T> trySubmit(JobType type, Callable<T> job)
+    {
+        if (!permits.get(type).tryAcquire()) return null;
+        return execute(type, job);
+    }
+
+    /**
+     *  Hand a job to its pool, once we have a permit for it.  
+     *  The permit is given back when the job finishes.  
+     */
+    private <T> Future<T> execute(JobType type, Callable<T> job)
+    {
+        final Semaphore s = permits.get(type);
+        FutureTask<T> task = new FutureTask<T>(job) {
+            protected void done()
+            {
+                s.release();
+            }
+        };
+        try {
+            getExecutor(type).execute(task);
+        } catch (RejectedExecutionException e) {
+            s.release();
+            throw e;
+        }
+        return task;
     }
 
     protected static class CustomThreadPoolExecutor extends ThreadPoolExecutor
     {
         public CustomThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
-                                        ArrayBlockingQueue<Runnable> workQueue, ThreadFactory threadFactory, RejectedExecutionHandler handler)
+                                        BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory, RejectedExecutionHandler handler)
         {
             super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
         }
@@ -69,7 +282,7 @@ public class GeneralThreadService {
 
     public String toString()
     {
-        return "This is a GeneralThreadService with a " + NUMBER_OF_THREADS + " thread pool with a maximum job capacity of " + JOB_CAPACITY;
+        return "This is a GeneralThreadService with a " + NUMBER_OF_THREADS + " thread pool that queues at most " + JOBS_PER_THREAD + " jobs per thread, running I/O on " + getExecutionMode(JobType.IO).toString().toLowerCase() + " threads";
     }
 
     // this creates customized threads
@@ -98,7 +311,7 @@ public class GeneralThreadService {
 
         public WorkerThread(Runnable runnable, String name)
         {
-            super(runnable, "thread " + created.incrementAndGet());
+            super(runnable, name + " thread " + created.incrementAndGet());
         }
 
         public void run()
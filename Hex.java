@@ -39,6 +39,13 @@ public interface Hex {
      */
     public SimpleHex createSimpleHex(List<Rhomb> allJoins, List<Rhomb> newJoins);
 
+    /**
+     *  Create a simplified version of this.  
+     *  @param simple The simplified version of each rhomb in this.  
+     *  @return A SimpleHex made of the simplified rhombs.  
+     */
+    public SimpleHex createSimpleHex(Map<Rhomb,SimpleRhomb> simple);
+
     /**
      *  Determine if this represents a hexagon--i.e., if the three {@link Rhomb}s are still in contact.  
      *  @return true if the three Rhombs are still in contact.  
@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  The {@link Hex}es in a patch, indexed by the rhombs they contain.  
+ *  Two Hexes are the same if they contain the same three rhombs, as
+ *  in the equals methods of {@link Triple} and {@link SimpleHex}, so
+ *  we can find or remove a Hex in constant time, even if we only have
+ *  another Hex made of the same rhombs.  
+ *  We also keep a map from each rhomb to the Hexes that contain it,
+ *  so {@link RhombBoundary#collapse(Rhomb)} doesn't have to look
+ *  through all of them.  
+ */
+public class HexList extends IndexedList<Hex> {
+
+    /** For serialization. */
+    public static final long serialVersionUID = 5514L;
+
+    /** The Hexes that contain each rhomb.  */
+    private transient Map<Rhomb,List<Hex>> containing;
+
+    // private constructor
+    private HexList() {
+        containing = new IdentityHashMap<>();
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @return An empty HexList.  
+     */
+    public static HexList createHexList() {
+        return new HexList();
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @param c The Hexes, in order.  
+     *  @return A HexList with the Hexes of c.  
+     */
+    public static HexList createHexList(Collection<? extends Hex> c) {
+        HexList output = new HexList();
+        output.addAll(c);
+        return output;
+    }
+
+    /**
+     *  The key under which a Hex is stored.  
+     *  @param o A Hex.  
+     *  @return An object that is equal to the key of any other Hex made
+     *  of the same three rhombs, or null if o isn't a Hex.  
+     */
+    protected Object key(Object o) {
+        return (o instanceof Hex) ? keyOf((Hex) o) : null;
+    }
+
+    /**
+     *  The key under which a Hex is stored in a HexList.  
+     *  @param h A Hex.  
+     *  @return An object that is equal to the key of any other Hex made
+     *  of the same three rhombs.  
+     */
+    public static Object keyOf(Hex h) {
+        return new HexKey(h.getJoins());
+    }
+
+    /** Record the rhombs in a Hex that was added.  */
+    protected void added(Hex h) {
+        for (Rhomb j : h.getJoins()) {
+            List<Hex> l = containing.get(j);
+            if (l==null) {
+                l = new ArrayList<>(3);
+                containing.put(j,l);
+            }
+            l.add(h);
+        }
+    }
+
+    /** Forget the rhombs in a Hex that was removed.  */
+    protected void removed(Hex h) {
+        for (Rhomb j : h.getJoins()) {
+            List<Hex> l = containing.get(j);
+            if (l==null) continue;
+            for (int i = 0; i < l.size(); i++) {
+                if (l.get(i)==h) {
+                    l.remove(i);
+                    break;
+                }
+            }
+            if (l.isEmpty()) containing.remove(j);
+        }
+    }
+
+    /**
+     *  Find the Hexes that contain a rhomb.  
+     *  @param j The rhomb.  
+     *  @return The Hexes in this List that contain j, in no particular order.  
+     */
+    public List<Hex> containing(Rhomb j) {
+        List<Hex> l = containing.get(j);
+        return (l==null) ? new ArrayList<Hex>() : new ArrayList<Hex>(l);
+    }
+
+    /**
+     *  Find the last Hex in this List that contains a rhomb.  
+     *  @param j The rhomb.  
+     *  @return The Hex containing j that comes last in this List, or
+     *  null if there is none.  
+     */
+    public Hex lastContaining(Rhomb j) {
+        List<Hex> l = containing.get(j);
+        if (l==null) return null;
+        Hex output = null;
+        for (Hex h : l) if (output==null||after(h,output)) output = h;
+        return output;
+    }
+
+    /**
+     *  An unordered set of three rhombs, compared by identity.  
+     */
+    private static class HexKey {
+
+        /** The rhombs.  */
+        private final Rhomb[] j;
+
+        // private constructor
+        private HexKey(Rhomb[] j) {
+            this.j = j;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof HexKey)) return false;
+            Rhomb[] k = ((HexKey) obj).j;
+            if (k.length!=j.length) return false;
+            for (Rhomb r : j) {
+                boolean found = false;
+                for (Rhomb s : k) {
+                    if (r==s) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) return false;
+            }
+            return true;
+        }
+
+        public int hashCode() {
+            int output = 0;
+            for (Rhomb r : j) output += System.identityHashCode(r);
+            return output;
+        }
+
+    } // end of class HexKey
+
+} // end of class HexList
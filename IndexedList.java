@@ -0,0 +1,317 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.io.*;
+
+/**
+ *  A List that knows where each of its elements is, so that we can
+ *  check whether it contains something, and remove it, in constant time.  
+ *  The elements stay in the order in which they were added, as in a
+ *  LinkedList, and new elements always go at the end.  
+ *  An element can only appear once.  
+ *  Elements are compared by identity, not with equals, because the
+ *  rhombs in a patch move around, and the equals and hashCode methods
+ *  of {@link SimpleRhomb} depend on where it is.  Subclasses can
+ *  compare them some other way by overriding {@link #key(Object)}.  
+ *  When it is saved, an IndexedList is replaced by an ArrayList, so
+ *  save files look the same as they did when we used ordinary Lists.  
+ */
+public class IndexedList<E> extends AbstractList<E> implements Serializable {
+
+    /** For serialization. */
+    public static final long serialVersionUID = 5513L;
+
+    /** Finds the Node containing an element from its key.  */
+    private transient Map<Object,Node<E>> index;
+    /** The first Node.  */
+    private transient Node<E> first;
+    /** The last Node.  */
+    private transient Node<E> last;
+    /** The number of elements.  */
+    private transient int size;
+    /** The number of elements ever added; this numbers the Nodes in order.  */
+    private transient long added;
+
+    // constructor
+    protected IndexedList() {
+        index = new HashMap<>();
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @return An empty IndexedList.  
+     */
+    public static <E> IndexedList<E> createIndexedList() {
+        return new IndexedList<E>();
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @param c The elements, in order.  
+     *  @return An IndexedList with the elements of c.  
+     */
+    public static <E> IndexedList<E> createIndexedList(Collection<? extends E> c) {
+        IndexedList<E> output = new IndexedList<E>();
+        output.addAll(c);
+        return output;
+    }
+
+    /**
+     *  When saving, save an ArrayList instead.  This is protected, 
+     *  rather than private, so that subclasses are saved the same way.  
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<E>(this);
+    }
+
+    /**
+     *  The key under which we store an element.  
+     *  @param o An element, or something that we're looking for.  
+     *  @return An object whose equals and hashCode methods identify
+     *  the element, or null if o can't be in this List.  
+     */
+    protected Object key(Object o) {
+        return (o==null) ? null : new IdentityKey(o);
+    }
+
+    /**
+     *  Called after an element is added.  Override this to keep
+     *  another index up to date.  
+     *  @param e The element that was added.  
+     */
+    protected void added(E e) {
+    }
+
+    /**
+     *  Called after an element is removed.  Override this to keep
+     *  another index up to date.  
+     *  @param e The element that was removed.  
+     */
+    protected void removed(E e) {
+    }
+
+    /**
+     *  Add an element at the end.  
+     *  @param e The element we add.  
+     *  @return true.  
+     *  @throws IllegalArgumentException If e is null or is already in this List.  
+     */
+    public boolean add(E e) {
+        Object k = key(e);
+        if (k==null) throw new IllegalArgumentException("Can't add " + e + " to an IndexedList.");
+        if (index.containsKey(k)) throw new IllegalArgumentException(e + " is already in this IndexedList.");
+        Node<E> n = new Node<E>(e,k,added++);
+        n.prev = last;
+        if (last==null) first = n;
+        else last.next = n;
+        last = n;
+        index.put(k,n);
+        size++;
+        modCount++;
+        added(e);
+        return true;
+    }
+
+    /**
+     *  Add an element at a given position.  We can only add elements
+     *  at the end.  
+     *  @param i The position, which must be {@link #size()}.  
+     *  @param e The element we add.  
+     */
+    public void add(int i, E e) {
+        if (i!=size) throw new UnsupportedOperationException("We can only add elements at the end of an IndexedList.");
+        add(e);
+    }
+
+    /**
+     *  Check whether something is in this List, in constant time.  
+     *  @param o The thing we're looking for.  
+     *  @return true if o is in this List.  
+     */
+    public boolean contains(Object o) {
+        Object k = key(o);
+        return k!=null && index.containsKey(k);
+    }
+
+    /**
+     *  Remove something from this List, in constant time.  
+     *  @param o The thing we remove.  
+     *  @return true if o was in this List.  
+     */
+    public boolean remove(Object o) {
+        Object k = key(o);
+        if (k==null) return false;
+        Node<E> n = index.get(k);
+        if (n==null) return false;
+        unlink(n);
+        return true;
+    }
+
+    /**
+     *  Remove the element at a given position.  
+     *  @param i The position.  
+     *  @return The element that was at position i.  
+     */
+    public E remove(int i) {
+        Node<E> n = node(i);
+        unlink(n);
+        return n.item;
+    }
+
+    /** Take a Node out of the List.  */
+    private void unlink(Node<E> n) {
+        if (n.prev==null) first = n.next;
+        else n.prev.next = n.next;
+        if (n.next==null) last = n.prev;
+        else n.next.prev = n.prev;
+        index.remove(n.key);
+        size--;
+        modCount++;
+        removed(n.item);
+    }
+
+    /**
+     *  Find the element in this List that is the same as o, as
+     *  determined by {@link #key(Object)}.  
+     *  @param o The thing we're looking for.  
+     *  @return The element of this List with the same key as o, or null.  
+     */
+    public E find(Object o) {
+        Object k = key(o);
+        Node<E> n = (k==null) ? null : index.get(k);
+        return (n==null) ? null : n.item;
+    }
+
+    /**
+     *  Tell which of two elements comes later in this List, in constant time.  
+     *  @param a An element of this List.  
+     *  @param b Another element of this List.  
+     *  @return true if a comes after b.  
+     */
+    public boolean after(E a, E b) {
+        return index.get(key(a)).order > index.get(key(b)).order;
+    }
+
+    /**
+     *  Find the element at a given position.  
+     *  This takes time proportional to the distance from the nearer end.  
+     *  @param i The position.  
+     *  @return The element at position i.  
+     */
+    public E get(int i) {
+        return node(i).item;
+    }
+
+    /** Find the Node at a given position.  */
+    private Node<E> node(int i) {
+        if (i<0||i>=size) throw new IndexOutOfBoundsException("Position " + i + " in an IndexedList of size " + size + ".");
+        Node<E> n;
+        if (i < size/2) {
+            n = first;
+            for (int j = 0; j < i; j++) n = n.next;
+        } else {
+            n = last;
+            for (int j = size-1; j > i; j--) n = n.prev;
+        }
+        return n;
+    }
+
+    /**
+     *  Getter method.  
+     *  @return The number of elements.  
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Remove all the elements.  
+     */
+    public void clear() {
+        while (first!=null) unlink(first);
+    }
+
+    /**
+     *  An Iterator over the elements, in order.  
+     *  It supports remove.  
+     *  @return An Iterator over this List.  
+     */
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private Node<E> next = first;
+            private Node<E> lastReturned = null;
+            private int expectedModCount = modCount;
+            public boolean hasNext() {
+                return next!=null;
+            }
+            public E next() {
+                if (modCount!=expectedModCount) throw new ConcurrentModificationException();
+                if (next==null) throw new NoSuchElementException();
+                lastReturned = next;
+                next = next.next;
+                return lastReturned.item;
+            }
+            public void remove() {
+                if (lastReturned==null) throw new IllegalStateException();
+                if (modCount!=expectedModCount) throw new ConcurrentModificationException();
+                unlink(lastReturned);
+                lastReturned = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    /**
+     *  A key that compares objects by identity.  
+     */
+    private static class IdentityKey {
+
+        /** The object.  */
+        private final Object o;
+
+        // constructor
+        private IdentityKey(Object o) {
+            this.o = o;
+        }
+
+        public boolean equals(Object obj) {
+            return (obj instanceof IdentityKey) && ((IdentityKey) obj).o == o;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(o);
+        }
+
+    } // end of class IdentityKey
+
+    /**
+     *  A place in the List.  
+     */
+    private static class Node<E> {
+
+        /** The element.  */
+        private final E item;
+        /** The key of the element.  */
+        private final Object key;
+        /** The number of elements added before this one.  */
+        private final long order;
+        /** The previous Node.  */
+        private Node<E> prev;
+        /** The next Node.  */
+        private Node<E> next;
+
+        // constructor
+        private Node(E item, Object key, long order) {
+            this.item = item;
+            this.key = key;
+            this.order = order;
+        }
+
+    } // end of class Node
+
+} // end of class IndexedList
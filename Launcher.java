@@ -137,8 +137,7 @@ class PrototileChecker extends JPanel {
             return;
         }
         for (int i = 0; i < RB.size(); i++) {
-            RhombBoundary rb = RhombBoundary.createRhombBoundary(Point.N()-1-2*i,seq);
-            CB.get(i).setSelected(rb.valid());
+            CB.get(i).setSelected(RhombBoundary.isTileable(Point.N()-1-2*i,seq,false));
         }
     }
 
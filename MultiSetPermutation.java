@@ -0,0 +1,293 @@
+import java.util.Arrays;
+import java.io.*;
+
+/**
+ *  A class for iterating through the permutations of a multiset without
+ *  repetition, like {@link MultiSetLinkedList}, but backed by a single
+ *  int array that is updated in place.  Stepping to the next permutation
+ *  allocates nothing.  
+ *  The permutations are visited in lexicographic order rather than
+ *  cool-lex order, because lexicographic order makes it cheap to jump
+ *  straight to the permutation with a given index (see {@link #unrank(long)}).  
+ *  This lets us divide the permutations into ranges of indices and hand
+ *  each range to a different thread without stepping through the earlier
+ *  ranges first.  
+ */
+public class MultiSetPermutation implements Serializable {
+
+    /** For serialization. */
+    public static final long serialVersionUID = 5511L;
+
+    /** The distinct values in the multiset, in increasing order.  */
+    private final int[] values;
+    /** The number of times each entry of values occurs.  */
+    private final int[] multiplicity;
+    /** The current permutation.  */
+    private final int[] current;
+    /** The total number of permutations.  */
+    private final long count;
+    /** The index of the current permutation in lexicographic order.  */
+    private long rank;
+    /** The first entry that changed the last time we moved.  */
+    private int changed;
+    /** Scratch space for {@link #unrank(long)}.  */
+    private transient int[] remaining;
+
+    // private constructor
+    private MultiSetPermutation(int[] d) {
+        if (d.length == 0) throw new IllegalArgumentException("Can't permute an empty multiset.");
+        int[] sorted = d.clone();
+        Arrays.sort(sorted);
+        int distinct = 1;
+        for (int j = 1; j < sorted.length; j++) if (sorted[j] != sorted[j-1]) distinct++;
+        values = new int[distinct];
+        multiplicity = new int[distinct];
+        int k = 0;
+        values[0] = sorted[0];
+        for (int j = 0; j < sorted.length; j++) {
+            if (sorted[j] != values[k]) values[++k] = sorted[j];
+            multiplicity[k]++;
+        }
+        current = sorted;
+        count = permutations(multiplicity.clone(), sorted.length);
+        rank = 0;
+    }
+
+    /**
+     *  Public static factory method.  
+     *  Create a MultiSetPermutation where the underlying multiset is
+     *  input as an array of int.  The array is copied.  
+     *  @param d The underlying multiset, given as an array of int.  
+     *  @return The MultiSetPermutation that iterates through permutations
+     *  of d, starting with the smallest one in lexicographic order.  
+     */
+    public static MultiSetPermutation createMultiSetPermutation(int[] d) {
+        return new MultiSetPermutation(d);
+    }
+
+    /**
+     *  The number of distinct permutations of a multiset.  
+     *  @param mult The multiplicities of the distinct values.  
+     *  @param n The sum of the entries of mult.  
+     *  @return The multinomial coefficient n!/(mult[0]!mult[1]!...).  
+     *  @throws ArithmeticException If the answer doesn't fit in a long.  
+     */
+    private static long permutations(int[] mult, int n) {
+        long output = 1;
+        int placed = 0;
+        for (int m : mult) {
+            // multiply by (placed+m choose m), one factor at a time
+            for (int j = 1; j <= m; j++) {
+                placed++;
+                output = multiplyDivide(output,placed,j);
+            }
+        }
+        return output;
+    }
+
+    /**
+     *  Compute a*b/c exactly, where we know that c divides a*b,
+     *  without overflowing unless the answer itself is too big.  
+     */
+    private static long multiplyDivide(long a, long b, long c) {
+        long g = gcd(b,c);
+        b /= g;
+        c /= g;
+        // now c divides a
+        return Math.multiplyExact(a/c,b);
+    }
+
+    // greatest common divisor
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     *  The total number of permutations of the underlying multiset.  
+     *  @return The number of permutations.  
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     *  The index of the current permutation in lexicographic order.  
+     *  @return A number between 0 and {@link #count()}-1.  
+     */
+    public long rank() {
+        return rank;
+    }
+
+    /**
+     *  The length of the permutations.  
+     *  @return The size of the underlying multiset.  
+     */
+    public int size() {
+        return current.length;
+    }
+
+    /**
+     *  The current permutation.  
+     *  This is the array that this object updates in place, so it
+     *  changes every time we call {@link #next()} or {@link #unrank(long)}.  
+     *  Don't modify it.  
+     *  @return The current permutation.  
+     */
+    public int[] current() {
+        return current;
+    }
+
+    /**
+     *  Produce an array version of the current permutation.  
+     *  @return A copy of the current permutation.  
+     */
+    public int[] getArray() {
+        return current.clone();
+    }
+
+    /**
+     *  Change to the next permutation in lexicographic order.  
+     *  @return false if this was the last permutation, in which case
+     *  nothing changes; true otherwise.  
+     */
+    public boolean next() {
+        int[] a = current;
+        int i = a.length - 2;
+        while (i >= 0 && a[i] >= a[i+1]) i--;
+        if (i < 0) return false;
+        int j = a.length - 1;
+        while (a[j] <= a[i]) j--;
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+        for (int l = i + 1, r = a.length - 1; l < r; l++, r--) {
+            t = a[l];
+            a[l] = a[r];
+            a[r] = t;
+        }
+        rank++;
+        changed = i;
+        return true;
+    }
+
+    /**
+     *  Skip all of the remaining permutations that begin with the same
+     *  depth entries as the current one, and change to the next
+     *  permutation in lexicographic order after them.  
+     *  This is what we do when we know that no permutation beginning
+     *  with these entries is any good.  
+     *  @param depth The length of the beginning that we want to change.  
+     *  @return false if there are no more permutations, in which case
+     *  this is left in an arbitrary state; true otherwise.  
+     */
+    public boolean skip(int depth) {
+        if (depth < 1 || depth > current.length) throw new IllegalArgumentException("Can't skip permutations beginning with " + depth + " entries.");
+        if (depth >= current.length - 1) return next();
+        // the number of permutations from this one to the last one with the same beginning
+        long ahead = suffixCount(depth) - suffixRank(depth);
+        // move to the last permutation with the same beginning
+        Arrays.sort(current,depth,current.length);
+        for (int l = depth, r = current.length - 1; l < r; l++, r--) {
+            int t = current[l];
+            current[l] = current[r];
+            current[r] = t;
+        }
+        rank += ahead - 1;
+        return next();
+    }
+
+    /**
+     *  The index of the first entry that changed the last time we
+     *  called {@link #next()}, {@link #skip(int)} or {@link #unrank(long)}.  
+     *  All entries before this one are the same as they were before.  
+     *  @return The index of the first entry that changed.  
+     */
+    public int firstChanged() {
+        return changed;
+    }
+
+    /**
+     *  Count the entries after from that are equal to each value.  
+     *  The answer is stored in {@link #remaining}.  
+     */
+    private void countSuffix(int from) {
+        if (remaining == null) remaining = new int[multiplicity.length];
+        Arrays.fill(remaining,0);
+        for (int p = from; p < current.length; p++) remaining[Arrays.binarySearch(values,current[p])]++;
+    }
+
+    /**
+     *  The number of permutations of the entries from index from onwards.  
+     */
+    private long suffixCount(int from) {
+        countSuffix(from);
+        return permutations(remaining,current.length-from);
+    }
+
+    /**
+     *  The index, in lexicographic order, of the entries from index
+     *  from onwards among all the permutations of those entries.  
+     */
+    private long suffixRank(int from) {
+        countSuffix(from);
+        long block = permutations(remaining,current.length-from);
+        long output = 0;
+        for (int n = current.length - from, p = from; n > 0; n--, p++) {
+            for (int k = 0; values[k] != current[p]; k++) {
+                if (remaining[k] > 0) output += multiplyDivide(block,remaining[k],n);
+            }
+            int k = Arrays.binarySearch(values,current[p]);
+            block = multiplyDivide(block,remaining[k],n);
+            remaining[k]--;
+        }
+        return output;
+    }
+
+    /**
+     *  Change to the permutation with a given index in
+     *  lexicographic order.  
+     *  @param r The index of the permutation we want.  
+     */
+    public void unrank(long r) {
+        if (r < 0 || r >= count) throw new IllegalArgumentException("There is no permutation with index " + r + "; there are only " + count + ".");
+        if (remaining == null) remaining = new int[multiplicity.length];
+        System.arraycopy(multiplicity,0,remaining,0,multiplicity.length);
+        rank = r;
+        changed = 0;
+        // the number of permutations of what's left
+        long block = count;
+        for (int n = current.length, p = 0; n > 0; n--, p++) {
+            for (int k = 0; k < values.length; k++) {
+                if (remaining[k] == 0) continue;
+                // the number of permutations of what's left that begin with values[k]
+                long sub = multiplyDivide(block,remaining[k],n);
+                if (r < sub) {
+                    current[p] = values[k];
+                    remaining[k]--;
+                    block = sub;
+                    break;
+                }
+                r -= sub;
+            }
+        }
+    }
+
+    /**
+     *  Output a String representation of the current state of this.  
+     *  @return A String containing the current permutation of the
+     *  underlying multiset, with entries separated by spaces and
+     *  enclosed by parentheses.  
+     */
+    public String toString() {
+        String output = "( ";
+        for (int j = 0; j < current.length; j++) output += current[j] + " ";
+        output += ")";
+        return output;
+    }
+
+} // end of class MultiSetPermutation
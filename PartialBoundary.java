@@ -0,0 +1,330 @@
+import java.util.Arrays;
+
+/**
+ *  The boundary of an inflated prototile, as in
+ *  {@link RhombBoundary#createRhombBoundary(int,int[])} and
+ *  {@link RhombBoundary#createSymmetricRhombBoundary(int,int[])}, but
+ *  with only the first few angles of the edge sequence filled in.
+ *  This is for searching through edge sequences: we add angles one at
+ *  a time with {@link #push(int)} and remove them with {@link #pop()},
+ *  and we find out as soon as it is certain that no way of filling in
+ *  the rest of the sequence gives a valid RhombBoundary.
+ *  <p>
+ *  The edge sequence appears on all four sides of the prototile, so
+ *  the first q angles fix the q {@link Terminus}es at each corner
+ *  where a side begins or ends with the start of the sequence.
+ *  On any one side, all Termini with angles in the same class (angles
+ *  k pi/N and (k+N) pi/N) point the same way, so the way in which
+ *  {@link RhombBoundary} pairs off the Termini into {@link Yarn}s only
+ *  depends on how many Termini of each class there are on each side,
+ *  which we know in advance from the multiset of angles.
+ *  So we know the Yarns before we know where they start and end, and
+ *  we can check whether two of them cross the wrong way (which is what
+ *  {@link Yarn#valid()} checks) as soon as we know enough about the
+ *  order of their ends around the boundary.
+ *  Once all of the angles have been added, this gives exactly the same
+ *  answer as {@link RhombBoundary#valid()}.
+ */
+public class PartialBoundary {
+
+    /** The value of {@link Point#N()} for which this was created.  */
+    private final int n;
+    /** The length of the edge sequence.  */
+    private final int l;
+    /** Which prototile are we making?  */
+    private final int even;
+    /** Is this boundary symmetric?  */
+    private final boolean sym;
+
+    /**
+     * The Termini, listed by side, then by class, then in
+     * counterclockwise order.  For each one we store the side it's on,
+     * its angle and class, its place among the Termini of the same
+     * class on the same side, the Terminus at the other end of its Yarn,
+     * and its index on the boundary (or -1 if we don't know it yet).
+     */
+    private final int[] side;
+    private final int[] angle;
+    private final int[] angleClass;
+    private final int[] step;
+    private final int[] partner;
+    private final int[] position;
+
+    /** Where the Termini on each side with each class begin.  */
+    private final int[][] offset;
+    /** How many Termini on each side have each class.  */
+    private final int[][] count;
+    /** How many Termini on each side with each class we have placed.  */
+    private final int[][] placed;
+    /** The Termini that we placed for each angle in the sequence.  */
+    private final int[] placedTermini;
+    /** The edge sequence so far.  */
+    private final int[] sequence;
+    /** The number of angles in the edge sequence so far.  */
+    private int q;
+
+    // private constructor
+    private PartialBoundary(int even, int[] angles, boolean sym) {
+        this.n = Point.N();
+        this.l = angles.length;
+        this.even = even;
+        this.sym = sym;
+        offset = new int[4][n+1];
+        count = new int[4][n+1];
+        placed = new int[4][n+1];
+        int[][] sideAngle = new int[4][n+1];
+        for (int a : angles) {
+            for (int x = 0; x < 4; x++) {
+                int b = angle(x,a);
+                int c = angleClass(b);
+                if (count[x][c] > 0 && sideAngle[x][c] != b) throw new IllegalArgumentException("Angles " + b + " and " + sideAngle[x][c] + " are on the same side.");
+                sideAngle[x][c] = b;
+                count[x][c]++;
+            }
+        }
+
+        // list the Termini
+        side = new int[4*l];
+        angle = new int[4*l];
+        angleClass = new int[4*l];
+        step = new int[4*l];
+        partner = new int[4*l];
+        position = new int[4*l];
+        Arrays.fill(position,-1);
+        int k = 0;
+        for (int x = 0; x < 4; x++) {
+            for (int c = 1; c <= n; c++) {
+                offset[x][c] = k;
+                for (int j = 0; j < count[x][c]; j++) {
+                    side[k] = x;
+                    angle[k] = sideAngle[x][c];
+                    angleClass[k] = c;
+                    step[k] = j;
+                    k++;
+                }
+            }
+        }
+
+        // pair them off, one class at a time.  Going around the boundary
+        // counterclockwise, a Terminus with the start angle of its class
+        // moves us up a level, and one with the end angle moves us down.
+        // A Terminus is paired with the last one to cross the same level.
+        int[] lastAtLevel = new int[8*l+1];
+        for (int c = 1; c <= n; c++) {
+            int start = (c%2==1) ? c : c+n;
+            Arrays.fill(lastAtLevel,-1);
+            int h = 4*l;
+            for (int x = 0; x < 4; x++) {
+                for (int j = 0; j < count[x][c]; j++) {
+                    int t = offset[x][c] + j;
+                    int level = (angle[t]==start) ? h++ : --h;
+                    if (lastAtLevel[level] < 0) {
+                        lastAtLevel[level] = t;
+                    } else {
+                        partner[t] = lastAtLevel[level];
+                        partner[lastAtLevel[level]] = t;
+                        lastAtLevel[level] = -1;
+                    }
+                }
+            }
+            if (h != 4*l) throw new IllegalArgumentException("The ends don't match.");
+        }
+        placedTermini = new int[4*l];
+        sequence = new int[l];
+        q = 0;
+    }
+
+    /**
+     *  Public static factory method.
+     *  @param even Tells us which prototile we're making.
+     *  @param angles The multiset of angles in the edge sequence, in any order.
+     *  @param sym Tells us if the boundary should be symmetric, as in
+     *  {@link RhombBoundary#createSymmetricRhombBoundary(int,int[])}.
+     *  @return An empty PartialBoundary, to which the angles can be
+     *  added in any order.
+     *  @throws IllegalArgumentException If the ends of the Yarns don't
+     *  match up, or if angles contains two angles that map to opposite
+     *  angles on the same side of the prototile.
+     */
+    public static PartialBoundary createPartialBoundary(int even, int[] angles, boolean sym) {
+        return new PartialBoundary(even,angles,sym);
+    }
+
+    /**
+     *  The angle of the Terminus on side x that comes from the
+     *  edge angle a, exactly as in
+     *  {@link RhombBoundary#createRhombBoundary(int,int[],int[],boolean)},
+     *  normalized to lie between 1 and 2N.
+     */
+    private int angle(int x, int a) {
+        int b = (sym && x < 2) ? -a : a;
+        int output;
+        switch (x) {
+            case 0:  output = (even>=b) ? 2*n-even+b : b-even;
+                     break;
+            case 1:  output = (b>0) ? b : 2*n+b;
+                     break;
+            case 2:  output = (n-even+b>0) ? n-even+b : 3*n-even+b;
+                     break;
+            default: output = n+b;
+        }
+        output = output % (2*n);
+        return (output <= 0) ? output + 2*n : output;
+    }
+
+    /**
+     *  The class of an angle: angles k pi/N and (k+N) pi/N are
+     *  both in class k.
+     */
+    private int angleClass(int a) {
+        return (a-1) % n + 1;
+    }
+
+    /**
+     *  The index on the boundary of the Terminus on side x that comes
+     *  from the angle at index j in the edge sequence.
+     */
+    private int boundaryIndex(int x, int j) {
+        switch (x) {
+            case 0:  return j;
+            case 1:  return l+j;
+            case 2:  return 3*l-1-j;
+            default: return 4*l-1-j;
+        }
+    }
+
+    /**
+     *  The number of angles in the edge sequence so far.
+     *  @return The number of angles added and not removed.
+     */
+    public int size() {
+        return q;
+    }
+
+    /**
+     *  The edge sequence so far.
+     *  This array is reused, so don't modify it.
+     *  @return An array whose first {@link #size()} entries are the
+     *  angles added so far.
+     */
+    public int[] getSequence() {
+        return sequence;
+    }
+
+    /**
+     *  Add the next angle to the edge sequence.
+     *  @param a The next angle.
+     *  @return false if it is now certain that no way of completing the
+     *  edge sequence gives a valid boundary, true otherwise.  Once
+     *  all the angles have been added, true means that the boundary
+     *  is valid.
+     *  @throws IllegalArgumentException If a isn't one of the angles left
+     *  over from the multiset that we started with.
+     */
+    public boolean push(int a) {
+        if (q == l) throw new IllegalArgumentException("The edge sequence is full.");
+        for (int x = 0; x < 4; x++) {
+            int c = angleClass(angle(x,a));
+            if (placed[x][c] == count[x][c] || angle[offset[x][c]] != angle(x,a)) {
+                // undo what we've done and complain
+                for (int y = 0; y < x; y++) {
+                    int t = placedTermini[4*q+y];
+                    position[t] = -1;
+                    placed[y][angleClass[t]]--;
+                }
+                throw new IllegalArgumentException("There is no " + a + " left to add.");
+            }
+            int j = placed[x][c]++;
+            // Termini on sides 2 and 3 are listed in the opposite order from the sequence
+            int t = offset[x][c] + ((x < 2) ? j : count[x][c]-1-j);
+            position[t] = boundaryIndex(x,q);
+            placedTermini[4*q+x] = t;
+        }
+        sequence[q] = a;
+        q++;
+        for (int x = 0; x < 4; x++) {
+            int t = placedTermini[4*(q-1)+x];
+            for (int u = 0; u < 4*l; u++) {
+                if (u < partner[u] && u != t && u != partner[t] && crossWrongWay(t,u)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *  Remove the last angle from the edge sequence.
+     */
+    public void pop() {
+        if (q == 0) throw new IllegalArgumentException("The edge sequence is empty.");
+        q--;
+        for (int x = 0; x < 4; x++) {
+            int t = placedTermini[4*q+x];
+            position[t] = -1;
+            placed[x][angleClass[t]]--;
+        }
+    }
+
+    /**
+     *  Remove angles from the end of the edge sequence until
+     *  it has a given length.
+     *  @param size The length of the edge sequence that we want.
+     */
+    public void popTo(int size) {
+        while (q > size) pop();
+    }
+
+    /**
+     *  Compare the positions of two Termini on the boundary.
+     *  @return -1 if t certainly comes before u, 1 if it certainly
+     *  comes after, and 0 if that depends on angles we haven't added yet.
+     */
+    private int compare(int t, int u) {
+        if (side[t] != side[u]) return (side[t] < side[u]) ? -1 : 1;
+        if (angleClass[t] == angleClass[u]) return (step[t] < step[u]) ? -1 : 1;
+        int pt = position[t];
+        int pu = position[u];
+        if (pt >= 0 && pu >= 0) return (pt < pu) ? -1 : 1;
+        if (pt < 0 && pu < 0) return 0;
+        // the Termini we know come at the beginning of sides 0 and 1
+        // and at the end of sides 2 and 3
+        boolean before = (side[t] < 2) == (pt >= 0);
+        return before ? -1 : 1;
+    }
+
+    /**
+     *  Is it certain that the Yarns through Termini t and u cross
+     *  each other the wrong way?
+     *  Two Yarns cross if exactly one end of one of them lies between
+     *  the ends of the other.  If the first ends of the two Yarns have
+     *  angles a (the earlier one) and b, then they cross the wrong way
+     *  unless b-a lies strictly between 0 and pi, modulo 2 pi.
+     */
+    private boolean crossWrongWay(int t, int u) {
+        int t1 = (compare(t,partner[t]) < 0) ? t : partner[t];
+        int t2 = partner[t1];
+        int u1 = (compare(u,partner[u]) < 0) ? u : partner[u];
+        int u2 = partner[u1];
+        int first = compare(t1,u1);
+        if (first == 0) return false;
+        int inside1 = between(t1,u1,t2);
+        if (inside1 == 0) return false;
+        int inside2 = between(t1,u2,t2);
+        if (inside2 == 0 || inside1 == inside2) return false;
+        int d = (first < 0) ? angle[u1] - angle[t1] : angle[t1] - angle[u1];
+        if (d <= 0) d += 2*n;
+        return d >= n;
+    }
+
+    /**
+     *  Is u between t1 and t2?
+     *  @return 1 if certainly, -1 if certainly not, 0 if we don't know yet.
+     */
+    private int between(int t1, int u, int t2) {
+        int a = compare(t1,u);
+        int b = compare(u,t2);
+        if (a > 0 || b > 0) return -1;
+        if (a == 0 || b == 0) return 0;
+        return 1;
+    }
+
+} // end of class PartialBoundary
@@ -27,8 +27,9 @@ import javax.swing.JPanel;
  */
 public class PatchDisplay extends JPanel {
     private final List<SimpleRhomb> SEED; // the starting patch before any substitutions
-    private List<List<SimpleRhomb>> poly;
+    private List<PatchStore> poly; // the rhombs at each level, stored as arrays
     private List<RhombBoundary> rules;
+    private PatchStore.Templates templates; // the rules, compiled for substitution
     private Point[] infl;
     /** edge is for drawing supertile outlines */
     private int[] edge;
@@ -57,21 +58,26 @@ public class PatchDisplay extends JPanel {
      *  Toggle supertile outlines.  
      */
     public static boolean supertiles = false;
+    /**
+     *  Toggle substituting only the tiles that can end up in the window.  
+     *  On is much faster at deep levels; off keeps the whole patch.  
+     */
+    public static boolean viewport = true;
 
     public PatchDisplay(List<SimpleRhomb> p, List<RhombBoundary> RB, int maxSubstitutions, Point[] infl, int[] edge, int w, int h) {
         this.maxSubstitutions = maxSubstitutions;
         this.currentLevel = 0;
         this.rules = RB;
+        this.templates = PatchStore.createTemplates(RB);
         this.infl = infl;
         this.edge = edge;
         this.factor = 1.0;
         this.rotation = 0.0;
         this.SEED = p;
-        this.poly = new ArrayList<List<SimpleRhomb>>();
-        this.poly.add(SEED);
+        this.poly = new ArrayList<PatchStore>();
+        this.poly.add(PatchStore.createPatchStore(SEED));
         for (int i = 0; i < this.maxSubstitutions+1; i++) {
-            List<SimpleRhomb> nextList = new ArrayList<SimpleRhomb>();
-            this.poly.add(nextList);
+            this.poly.add(PatchStore.createPatchStore(RhombDisplay.SCALE));
         }
         this.width  = w;
         this.height = h;
@@ -121,9 +127,10 @@ public class PatchDisplay extends JPanel {
         if (antialiasing) g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2.fillRect(0, 0, getWidth(), getHeight());
         g2.translate(XTRANS,YTRANS);
-        for (SimpleRhomb p : poly.get(currentLevel)) {
-            SimplePolygon2D drawMe = p.getRhomb().transform(trans);
-            g2.setColor(ColourPalette.colour(p.getType()-1)); 
+        PatchStore current = poly.get(currentLevel);
+        for (int i = 0; i < current.size(); i++) {
+            SimplePolygon2D drawMe = current.polygon(i).transform(trans);
+            g2.setColor(ColourPalette.colour(current.getType(i)-1)); 
             drawMe.fill(g2);
             g2.setColor(Color.BLACK); 
             drawMe.draw(g2);
@@ -131,8 +138,9 @@ public class PatchDisplay extends JPanel {
         if (supertiles&&(currentLevel>0)) {
             g2.setColor(Color.BLACK); 
             g2.setStroke(new BasicStroke(5, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            for (SimpleRhomb s : poly.get(currentLevel-1)) {
-                s.outline(infl,edge).transform(trans).draw(g2);
+            PatchStore previous = poly.get(currentLevel-1);
+            for (int i = 0; i < previous.size(); i++) {
+                previous.get(i).outline(infl,edge).transform(trans).draw(g2);
             }
             g2.setStroke(new BasicStroke());
         }
@@ -142,20 +150,39 @@ public class PatchDisplay extends JPanel {
      * The default: substitute once.  
      */
     public void subRhomb() {
+        subRhomb(null,null);
+    }
+
+    /**
+     * Substitute once, only filling in the parts of the next level that 
+     * have changed since we last substituted, if we can.  
+     * @param moved Which tiles at the current level have changed, or 
+     * null to fill in the next level from scratch.  
+     * @param changed Which tiles of each rule have changed, as in 
+     * {@link PatchStore.Templates#changes(PatchStore.Templates)}.  
+     * @return Which tiles at the next level have changed, or null if 
+     * they all might have.  
+     */
+    private boolean[] subRhomb(boolean[] moved, boolean[][] changed) {
+        // the transformation with which the current level is drawn
+        AffineTransform2D view = AffineTransform2D.createScaling(SCALE*factor,SCALE*factor).concatenate(AffineTransform2D.createRotation(rotation));
         factor /= SCALE_DECREMENT;
         rotation += ROTATION_INCREMENT;
-        List<SimpleRhomb> nextSubtiles = poly.get(currentLevel+1);
-        nextSubtiles.clear();
-        for (SimpleRhomb r : poly.get(currentLevel)) {
-            Point shift = r.getPoint().multiply(infl);
-            int rotation = r.getAngle();
-            List<Rhomb> substitutedTile = rules.get(r.getType()-1).getJoins();
-            for (Rhomb R : substitutedTile){
-                SimpleRhomb nextRhomb = R.createSimpleRhomb().transform(rotation,shift);
-                nextSubtiles.add(nextRhomb);
-            }
+        PatchStore next = poly.get(currentLevel+1);
+        boolean[] output;
+        if (viewport&&SCALE_DECREMENT>1.0) {
+            // a tile is drawn in the same place as its image, so all of the 
+            // tiles that come from it, at any level, lie within a distance of 
+            // its corner that is the sum of a geometric series
+            double unit = RhombDisplay.SCALE*SCALE*factor;
+            double margin = templates.getRadius()*unit*SCALE_DECREMENT/(SCALE_DECREMENT-1.0) + 1.0;
+            Box2D window = new Box2D(-XTRANS,width-XTRANS,-YTRANS,height-YTRANS);
+            output = next.resubstitute(poly.get(currentLevel),moved,templates,changed,infl,view,window,margin);
+        } else {
+            output = next.resubstitute(poly.get(currentLevel),moved,templates,changed,infl,null,null,0.0);
         }
         currentLevel++;
+        return output;
     }
 
     /**
@@ -168,11 +195,25 @@ public class PatchDisplay extends JPanel {
 
     /**
      * Goes back to the beginning and substitutes everything again.  
+     * The rules might have changed, so we compile them again first.  
+     * If we're already showing that many substitutions, and the rules 
+     * have only had tiles moved, we keep track of which tiles the moved 
+     * ones end up in at each level, and only substitute those again.  
      * @param substitutions The number of times to substitute, starting from the beginning.  
      */
     public void update(int substitutions) {
-        resetRhomb();
-        subRhomb(substitutions);
+        PatchStore.Templates old = templates;
+        templates = PatchStore.createTemplates(rules);
+        boolean[][] changed = templates.changes(old);
+        if (changed==null||substitutions!=currentLevel) {
+            resetRhomb();
+            subRhomb(substitutions);
+        } else {
+            resetRhomb();
+            // nothing in the seed moves
+            boolean[] moved = new boolean[poly.get(0).size()];
+            for (int i = 0; i < substitutions; i++) moved = subRhomb(moved,changed);
+        }
         updateUI();
     }
 
@@ -198,10 +239,11 @@ public class PatchDisplay extends JPanel {
 
     /**
      * Return a List of SimpleRhombs that appear in this.  
+     * The SimpleRhombs are made as they are read from the List.  
      * @return A List of SimpleRhombs that appear in this.  
      */
     public List<SimpleRhomb> getPatch() {
-        return poly.get(currentLevel);
+        return poly.get(currentLevel).asList();
     }
 
     /**
@@ -212,7 +254,7 @@ public class PatchDisplay extends JPanel {
      */
     public List<SimpleRhomb> getSupertiles() {
         if (currentLevel>0) {
-            return poly.get(currentLevel-1);
+            return poly.get(currentLevel-1).asList();
         } else {
             return new ArrayList<>();
         }
@@ -225,17 +267,38 @@ public class PatchDisplay extends JPanel {
      * @return A String with instructions for how to draw tile in Postscript.  
      */
     public String supertilePostscriptString(SimpleRhomb tile) {
+        return supertilePostscriptString(tile,infl);
+    }
+
+    /**
+     * String representation of a supertile for Postscript.  
+     * @param tile The tile we want to draw.  
+     * @param infl The inflation with which we inflate tile.  
+     * @return A String with instructions for how to draw tile in Postscript.  
+     */
+    private static String supertilePostscriptString(SimpleRhomb tile, Point[] infl) {
         Point p = tile.getPoint();
         return "gsave " + p.multiply(infl).postscriptString() + Point.order() + "orth translate " + (tile.getAngle()*(180.0/Point.N())) + " rotate supert" + tile.getType() + " grestore";
     }
 
+    /**
+     * Take a copy of everything that we need to write this display as 
+     * postscript, so that the postscript can be produced on another 
+     * thread while the user carries on editing.  
+     * @return A copy of the current level of this display, and the 
+     * supertiles and rotation with which it is drawn.  
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
     /**
      * Produce a String representation of the bounding box of this 
      * display for use in creating Postscript output.  
      * @return The bounding box in the format "xmin ymin xmax ymax".  
      */
     public String boundingBox() {
-        double s = poly.get(0).get(0).getScale();
+        double s = SEED.get(0).getScale();
         int w = (int)((width*28.3464)/(s*SCALE*factor));
         int h = (int)((height*28.3464)/(s*SCALE*factor));
         int xmin = (int)(4*28.3464-(XTRANS*28.3464)/(s*SCALE*factor));
@@ -262,4 +325,75 @@ public class PatchDisplay extends JPanel {
         return output;
     }
 
+    /**
+     * A copy of what a PatchDisplay shows at one moment, for writing it 
+     * as postscript (see {@link FileManager#postscriptBody(PatchDisplay.Snapshot)}).  
+     * It has the same methods as PatchDisplay for this, but it doesn't 
+     * change when the PatchDisplay does.  
+     */
+    public static class Snapshot {
+
+        /** Are the supertiles showing?  */
+        public final boolean supertiles;
+        /** The rhombs at the current level.  */
+        private final PatchStore patch;
+        /** The rhombs at the level before, or null if there isn't one.  */
+        private final PatchStore previous;
+        /** The rotation of the current level.  */
+        private final double rotation;
+        /** The bounding box of the display.  */
+        private final String box;
+        /** The postscript definition of each proto-supertile, or null if the supertiles aren't showing.  */
+        private final String[] supertile;
+        /** The inflation, for drawing supertiles.  */
+        private final Point[] infl;
+
+        // private constructor
+        private Snapshot(PatchDisplay d) {
+            this.supertiles = PatchDisplay.supertiles;
+            this.patch = d.poly.get(d.currentLevel).copy();
+            this.previous = (d.currentLevel>0) ? d.poly.get(d.currentLevel-1).copy() : null;
+            this.rotation = d.rotation;
+            this.box = d.boundingBox();
+            this.infl = d.infl.clone();
+            if (supertiles) {
+                this.supertile = new String[Point.N()/2];
+                for (int i = 0; i < supertile.length; i++) supertile[i] = d.supertile(i);
+            } else {
+                this.supertile = null;
+            }
+        }
+
+        /** See {@link PatchDisplay#getRotation()}.  */
+        public double getRotation() {
+            return rotation;
+        }
+
+        /** See {@link PatchDisplay#getPatch()}.  */
+        public List<SimpleRhomb> getPatch() {
+            return patch.asList();
+        }
+
+        /** See {@link PatchDisplay#getSupertiles()}.  */
+        public List<SimpleRhomb> getSupertiles() {
+            return (previous==null) ? new ArrayList<SimpleRhomb>() : previous.asList();
+        }
+
+        /** See {@link PatchDisplay#supertilePostscriptString(SimpleRhomb)}.  */
+        public String supertilePostscriptString(SimpleRhomb tile) {
+            return PatchDisplay.supertilePostscriptString(tile,infl);
+        }
+
+        /** See {@link PatchDisplay#boundingBox()}.  */
+        public String boundingBox() {
+            return box;
+        }
+
+        /** See {@link PatchDisplay#supertile(int)}.  */
+        public String supertile(int i) {
+            return supertile[i];
+        }
+
+    } // end of class Snapshot
+
 } // end of class PatchDisplay
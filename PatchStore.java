@@ -0,0 +1,747 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import math.geom2d.polygon.SimplePolygon2D;
+import math.geom2d.Point2D;
+import math.geom2d.AffineTransform2D;
+import math.geom2d.Box2D;
+
+/**
+ *  A class for storing the rhombs of a large patch, such as one level
+ *  of substitution in a {@link PatchDisplay}.  
+ *  Instead of a {@link SimpleRhomb} for each rhomb, with its Points,
+ *  vertices and polygon, we keep a few arrays of primitives: the type,
+ *  the angle and the angles of the two edge vectors of each rhomb, and
+ *  the coefficients and Cartesian coordinates of its corner point.  
+ *  SimpleRhombs are only made when someone asks for them, with
+ *  {@link #get(int)} or {@link #asList()}.  
+ *  A PatchStore has {@link Point#N()}-1 coefficients for each corner,
+ *  so don't keep one after changing N.  
+ */
+public class PatchStore {
+
+    /** The number of rhombs we make room for at first.  */
+    private static final int INITIAL_CAPACITY = 16;
+    /** The number of rhombs whose images we find in one fork-join task.  */
+    public static final int SUBSTITUTION_CHUNK = 1024;
+
+    /** The number of coefficients of a Point.  */
+    private final int dim;
+    /** The scale at which the rhombs are drawn.  */
+    private final double scale;
+    /** The x-coordinates of the unit vectors at each angle.  */
+    private final double[] unitX;
+    /** The y-coordinates of the unit vectors at each angle.  */
+    private final double[] unitY;
+
+    /** The number of rhombs.  */
+    private int size;
+    /** The type of each rhomb.  */
+    private int[] types;
+    /** The angle of each rhomb.  */
+    private int[] angles;
+    /** The angle of the first edge vector (v1) of each rhomb.  */
+    private int[] v1s;
+    /** The angle of the second edge vector (v2) of each rhomb.  */
+    private int[] v2s;
+    /** The coefficients of the corner point of each rhomb, dim at a time.  */
+    private int[] coords;
+    /** The x-coordinate of the corner point of each rhomb.  */
+    private double[] xs;
+    /** The y-coordinate of the corner point of each rhomb.  */
+    private double[] ys;
+    /** The patch that we last substituted into this, or null.  */
+    private PatchStore lastSource;
+    /** The index of the first rhomb in the image of each rhomb of lastSource.  */
+    private int[] offsets;
+
+    // private constructor
+    private PatchStore(double scale) {
+        this.dim = Point.N()-1;
+        this.scale = scale;
+        unitX = new double[2*Point.N()];
+        unitY = new double[2*Point.N()];
+        for (int i = 0; i < 2*Point.N(); i++) {
+            Point2D u = Point.createPoint(i).getPoint2D();
+            unitX[i] = u.x();
+            unitY[i] = u.y();
+        }
+        types = new int[INITIAL_CAPACITY];
+        angles = new int[INITIAL_CAPACITY];
+        v1s = new int[INITIAL_CAPACITY];
+        v2s = new int[INITIAL_CAPACITY];
+        coords = new int[INITIAL_CAPACITY*dim];
+        xs = new double[INITIAL_CAPACITY];
+        ys = new double[INITIAL_CAPACITY];
+    }
+
+    // private copy constructor
+    private PatchStore(PatchStore p) {
+        this.dim = p.dim;
+        this.scale = p.scale;
+        this.unitX = p.unitX;
+        this.unitY = p.unitY;
+        this.size = p.size;
+        this.types = Arrays.copyOf(p.types,p.size);
+        this.angles = Arrays.copyOf(p.angles,p.size);
+        this.v1s = Arrays.copyOf(p.v1s,p.size);
+        this.v2s = Arrays.copyOf(p.v2s,p.size);
+        this.coords = Arrays.copyOf(p.coords,p.size*p.dim);
+        this.xs = Arrays.copyOf(p.xs,p.size);
+        this.ys = Arrays.copyOf(p.ys,p.size);
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @param scale The scale at which the rhombs are drawn.  
+     *  @return An empty PatchStore.  
+     */
+    public static PatchStore createPatchStore(double scale) {
+        return new PatchStore(scale);
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @param rhombs The rhombs we store.  They are all drawn at the
+     *  scale of the first one.  
+     *  @return A PatchStore containing rhombs.  
+     */
+    public static PatchStore createPatchStore(List<SimpleRhomb> rhombs) {
+        PatchStore output = new PatchStore(rhombs.isEmpty() ? RhombDisplay.SCALE : rhombs.get(0).getScale());
+        for (SimpleRhomb r : rhombs) output.add(r);
+        return output;
+    }
+
+    /**
+     *  Make room for more rhombs.  
+     *  @param capacity The number of rhombs we need room for.  
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) return;
+        int c = Math.max(capacity,2*types.length);
+        int cd;
+        try {
+            cd = Math.multiplyExact(capacity,dim);
+            if (c > Integer.MAX_VALUE/dim) c = capacity;
+            else cd = c*dim;
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("This level has too many rhombs to store.", e);
+        }
+        types = Arrays.copyOf(types,c);
+        angles = Arrays.copyOf(angles,c);
+        v1s = Arrays.copyOf(v1s,c);
+        v2s = Arrays.copyOf(v2s,c);
+        coords = Arrays.copyOf(coords,cd);
+        xs = Arrays.copyOf(xs,c);
+        ys = Arrays.copyOf(ys,c);
+    }
+
+    /**
+     *  Add a rhomb.  
+     *  @param r The rhomb we add.  
+     */
+    public void add(SimpleRhomb r) {
+        int a1 = r.v1.unitAngle();
+        int a2 = r.v2.unitAngle();
+        if (a1<0||a2<0) throw new IllegalArgumentException("The edges of " + r + " are not unit vectors.");
+        ensureCapacity(size+1);
+        types[size] = r.getType();
+        angles[size] = r.getAngle();
+        v1s[size] = a1;
+        v2s[size] = a2;
+        r.getPoint().copyInto(coords,size*dim);
+        Point2D p = r.getPoint().getPoint2D();
+        xs[size] = p.x();
+        ys[size] = p.y();
+        size++;
+        lastSource = null;
+        offsets = null;
+    }
+
+    /**
+     *  Make a copy of this, which doesn't change when this does.  
+     *  This only copies a few arrays, so it's cheap even for a big 
+     *  patch, and the copy can be read on another thread.  
+     *  @return A PatchStore containing the same rhombs as this.  
+     */
+    public PatchStore copy() {
+        return new PatchStore(this);
+    }
+
+    /**
+     *  Remove all the rhombs.  
+     */
+    public void clear() {
+        size = 0;
+        lastSource = null;
+        offsets = null;
+    }
+
+    /**
+     *  Getter method.  
+     *  @return The number of rhombs.  
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Getter method.  
+     *  @param i The index of a rhomb.  
+     *  @return The type of the rhomb at index i.  
+     */
+    public int getType(int i) {
+        check(i);
+        return types[i];
+    }
+
+    /**
+     *  Getter method.  
+     *  @param i The index of a rhomb.  
+     *  @return The angle of the rhomb at index i.  
+     */
+    public int getAngle(int i) {
+        check(i);
+        return angles[i];
+    }
+
+    /**
+     *  Getter method.  
+     *  @param i The index of a rhomb.  
+     *  @return The corner point of the rhomb at index i.  
+     */
+    public Point getPoint(int i) {
+        check(i);
+        return Point.createPoint(coords,i*dim);
+    }
+
+    /**
+     *  Make a SimpleRhomb for one of the rhombs.  
+     *  A new SimpleRhomb is made each time, so changing it doesn't
+     *  change this.  
+     *  @param i The index of a rhomb.  
+     *  @return A SimpleRhomb equal to the rhomb at index i.  
+     */
+    public SimpleRhomb get(int i) {
+        SimpleRhomb output = SimpleRhomb.createSimpleRhomb(getPoint(i),Point.createPoint(v1s[i]),Point.createPoint(v2s[i]),types[i],angles[i]);
+        if (scale!=output.getScale()) output.setScale(scale);
+        return output;
+    }
+
+    /**
+     *  A List view of this.  Each time an element is read, we make a
+     *  new SimpleRhomb with {@link #get(int)}.  
+     *  @return A List containing the rhombs of this.  
+     */
+    public List<SimpleRhomb> asList() {
+        return new AbstractList<SimpleRhomb>() {
+            public SimpleRhomb get(int i) {
+                return PatchStore.this.get(i);
+            }
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     *  Make a polygon for drawing one of the rhombs, without making a
+     *  SimpleRhomb.  It has the same vertices as {@link SimpleRhomb#getRhomb()}.  
+     *  @param i The index of a rhomb.  
+     *  @return The rhomb at index i, at the scale of this.  
+     */
+    public SimplePolygon2D polygon(int i) {
+        check(i);
+        double x = xs[i];
+        double y = ys[i];
+        double x1 = unitX[v1s[i]];
+        double y1 = unitY[v1s[i]];
+        double x2 = unitX[v2s[i]];
+        double y2 = unitY[v2s[i]];
+        return new SimplePolygon2D(new Point2D[] {new Point2D(scale*x,scale*y),new Point2D(scale*(x+x2),scale*(y+y2)),new Point2D(scale*(x+x2+x1),scale*(y+y2+y1)),new Point2D(scale*(x+x1),scale*(y+y1))});
+    }
+
+    /**
+     *  Replace the contents of this with the image of another patch
+     *  under substitution.  
+     *  This compiles the rules into {@link Templates} first, so if you
+     *  substitute several times with the same rules, it's quicker to do
+     *  that once and call {@link #substitute(PatchStore,Templates,Point[])}.  
+     *  @param source The patch that we substitute.  It must not be this.  
+     *  @param rules The substitution rules, one for each type of rhomb.  
+     *  @param infl The inflation matrix, as in {@link Point#inflation(int[])}.  
+     */
+    public void substitute(PatchStore source, List<RhombBoundary> rules, Point[] infl) {
+        substitute(source,createTemplates(rules),infl);
+    }
+
+    /**
+     *  Replace the contents of this with the image of another patch
+     *  under substitution.  
+     *  Each rhomb of source is replaced by the rhombs of the rule for
+     *  its type, rotated by its angle and shifted by its inflated corner,
+     *  as in {@link SimpleRhomb#transform(int,Point)}.  
+     *  Every rhomb expands independently, so we first work out where
+     *  the image of each one goes, from the number of rhombs in each
+     *  rule, and then fill in the images of chunks of source at the same
+     *  time on the fork-join pool of {@link GeneralThreadService}.  
+     *  The rhombs come out in the same order either way.  
+     *  @param source The patch that we substitute.  It must not be this.  
+     *  @param templates The substitution rules, compiled.  
+     *  @param infl The inflation matrix, as in {@link Point#inflation(int[])}.  
+     */
+    public void substitute(PatchStore source, Templates templates, Point[] infl) {
+        substitute(source,templates,infl,null);
+    }
+
+    /**
+     *  Replace the contents of this with the image under substitution 
+     *  of the rhombs of another patch that might end up in a window.  
+     *  We leave out each rhomb of source whose corner, drawn with view, 
+     *  is more than margin outside window, and substitute the rest as in 
+     *  {@link #substitute(PatchStore,Templates,Point[])}.  
+     *  @param source The patch that we substitute.  It must not be this.  
+     *  @param templates The substitution rules, compiled.  
+     *  @param infl The inflation matrix, as in {@link Point#inflation(int[])}.  
+     *  @param view The transformation with which source is drawn, 
+     *  applied to its polygons (see {@link #polygon(int)}).  
+     *  @param window The region in which we draw, after view.  
+     *  @param margin How far outside window the corner of a rhomb of 
+     *  source can be, if we're to keep it.  This should be at least as 
+     *  far as any of the rhombs that it will be substituted by, after 
+     *  any number of substitutions.  
+     */
+    public void substitute(PatchStore source, Templates templates, Point[] infl, AffineTransform2D view, Box2D window, double margin) {
+        substitute(source,templates,infl,keep(source,view,window,margin));
+    }
+
+    /**
+     *  Decide which rhombs of a patch might end up in a window.  
+     *  @param source The patch.  
+     *  @param view The transformation with which source is drawn.  
+     *  @param window The region in which we draw, after view.  
+     *  @param margin How far outside window the corner of a rhomb can be.  
+     *  @return Which rhombs of source we keep.  
+     */
+    private static boolean[] keep(PatchStore source, AffineTransform2D view, Box2D window, double margin) {
+        boolean[] keep = new boolean[source.size];
+        for (int i = 0; i < source.size; i++) {
+            Point2D c = view.transform(new Point2D(source.scale*source.xs[i],source.scale*source.ys[i]));
+            keep[i] = c.x() >= window.getMinX()-margin && c.x() <= window.getMaxX()+margin
+                   && c.y() >= window.getMinY()-margin && c.y() <= window.getMaxY()+margin;
+        }
+        return keep;
+    }
+
+    /**
+     *  Bring this up to date after some of the rhombs of the patch that
+     *  was last substituted into it have moved, or some of the rules 
+     *  have changed, without substituting the whole patch again.  
+     *  We keep track of where the image of each rhomb of source starts, 
+     *  so as long as every rhomb of source has as many rhombs in its 
+     *  image as it did last time, we only fill in the images of the 
+     *  rhombs that moved, and the rhombs in the images of the others 
+     *  that come from the parts of the rules that changed.  
+     *  Otherwise we substitute everything, as in 
+     *  {@link #substitute(PatchStore,Templates,Point[],AffineTransform2D,Box2D,double)}.  
+     *  @param source The patch that we substitute.  It must not be this.  
+     *  @param moved Which rhombs of source have changed since we last 
+     *  substituted it, or null if we don't know.  
+     *  @param templates The substitution rules, compiled.  
+     *  @param changed Which rhombs of each rule have changed since we 
+     *  last substituted, as in {@link Templates#changes(Templates)}, or 
+     *  null if we don't know.  
+     *  @param infl The inflation matrix, as in {@link Point#inflation(int[])}.  
+     *  @param view The transformation with which source is drawn, or 
+     *  null to substitute all of source.  
+     *  @param window The region in which we draw, after view.  
+     *  @param margin How far outside window the corner of a rhomb of 
+     *  source can be, if we're to keep it.  
+     *  @return Which rhombs of this have changed, or null if we 
+     *  substituted everything.  
+     */
+    public boolean[] resubstitute(PatchStore source, boolean[] moved, Templates templates, boolean[][] changed, Point[] infl, AffineTransform2D view, Box2D window, double margin) {
+        boolean[] keep = (view==null) ? null : keep(source,view,window,margin);
+        int[] o = offsets(source,templates,keep);
+        if (moved==null||changed==null||source!=lastSource||!Arrays.equals(o,offsets)) {
+            substitute(source,templates,infl,keep);
+            return null;
+        }
+        if (moved.length!=source.size) throw new IllegalArgumentException("There are " + source.size + " rhombs to substitute, not " + moved.length + ".");
+        if (changed.length!=templates.tiles.length) throw new IllegalArgumentException("There are " + templates.tiles.length + " rules, not " + changed.length + ".");
+        Substitution s = new Substitution(source,templates,infl);
+        s.redo(moved,changed,new boolean[size]);
+        run(s,o);
+        return s.redone;
+    }
+
+    /**
+     *  Work out where the image of each rhomb of a patch starts.  
+     *  @param source The patch that we substitute.  
+     *  @param templates The substitution rules, compiled.  
+     *  @param keep Which rhombs of source we substitute, or null for all of them.  
+     *  @return The index of the first rhomb in the image of each rhomb 
+     *  of source, followed by the total number of rhombs.  
+     *  @throws IllegalStateException If the total doesn't fit in an int.  
+     */
+    private static int[] offsets(PatchStore source, Templates templates, boolean[] keep) {
+        int[] output = new int[source.size+1];
+        for (int i = 0; i < source.size; i++) {
+            int children = (keep==null||keep[i]) ? templates.tiles[source.types[i]-1].size : 0;
+            try {
+                output[i+1] = Math.addExact(output[i],children);
+            } catch (ArithmeticException e) {
+                throw new IllegalStateException("This level has too many rhombs to substitute.", e);
+            }
+        }
+        return output;
+    }
+
+    /**
+     *  Fill in images, on the fork-join pool if there are enough of them.  
+     *  @param s The data that we need.  
+     *  @param o The index of the image of each rhomb of the source.  
+     */
+    private static void run(Substitution s, int[] o) {
+        int n = o.length-1;
+        if (n <= SUBSTITUTION_CHUNK) s.substitute(0,n,o);
+        else GeneralThreadService.INSTANCE.getForkJoinPool().invoke(new SubstitutionTask(s,0,n,o));
+    }
+
+    /**
+     *  Replace the contents of this with the image of some of the rhombs 
+     *  of another patch under substitution.  
+     *  @param source The patch that we substitute.  It must not be this.  
+     *  @param templates The substitution rules, compiled.  
+     *  @param infl The inflation matrix, as in {@link Point#inflation(int[])}.  
+     *  @param keep Which rhombs of source we substitute, or null for all of them.  
+     */
+    private void substitute(PatchStore source, Templates templates, Point[] infl, boolean[] keep) {
+        if (source==this) throw new IllegalArgumentException("Can't substitute a PatchStore into itself.");
+        if (templates.dim!=dim) throw new IllegalArgumentException("These templates were made for a different value of N.");
+        Substitution s = new Substitution(source,templates,infl);
+        // offsets[i] is the index of the first rhomb in the image of rhomb i
+        int[] o = offsets(source,templates,keep);
+        ensureCapacity(o[source.size]);
+        size = o[source.size];
+        run(s,o);
+        lastSource = source;
+        offsets = o;
+    }
+
+    /**
+     *  Public static factory method.  
+     *  Compile substitution rules for {@link #substitute(PatchStore,Templates,Point[])}.  
+     *  Make new Templates whenever the rules change.  
+     *  @param rules The substitution rules, one for each type of rhomb.  
+     *  @return The rules, rotated by every angle.  
+     */
+    public static Templates createTemplates(List<RhombBoundary> rules) {
+        return new Templates(rules);
+    }
+
+    /**
+     *  The data that we need to substitute one patch into this.  
+     */
+    private class Substitution {
+
+        /** The patch that we substitute.  */
+        private final PatchStore source;
+        /** The rules, one for each type of rhomb.  */
+        private final Tile[] tiles;
+        /** The inflation matrix, one row at a time.  */
+        private final int[] matrix;
+        /** The x-coordinates of the rows of the inflation matrix.  */
+        private final double[] inflX;
+        /** The y-coordinates of the rows of the inflation matrix.  */
+        private final double[] inflY;
+        /** Which rhombs of source moved, or null to fill in every image.  */
+        private boolean[] moved;
+        /** Which rhombs of each rule changed.  */
+        private boolean[][] changed;
+        /** Whether any rhombs of each rule changed.  */
+        private boolean[] anyChanged;
+        /** Which rhombs of this we have filled in.  */
+        private boolean[] redone;
+
+        // private constructor
+        private Substitution(PatchStore source, Templates templates, Point[] infl) {
+            this.source = source;
+            matrix = new int[dim*dim];
+            inflX = new double[dim];
+            inflY = new double[dim];
+            for (int j = 0; j < dim; j++) {
+                infl[j].copyInto(matrix,j*dim);
+                Point2D q = infl[j].getPoint2D();
+                inflX[j] = q.x();
+                inflY[j] = q.y();
+            }
+            tiles = templates.tiles;
+        }
+
+        /**
+         *  Only fill in the images of the rhombs of source that moved, 
+         *  and the parts of the other images that come from rhombs of 
+         *  the rules that changed.  
+         *  @param moved Which rhombs of source moved.  
+         *  @param changed Which rhombs of each rule changed.  
+         *  @param redone Where we record which rhombs of this we fill in.  
+         */
+        private void redo(boolean[] moved, boolean[][] changed, boolean[] redone) {
+            this.moved = moved;
+            this.changed = changed;
+            this.redone = redone;
+            anyChanged = new boolean[changed.length];
+            for (int t = 0; t < changed.length; t++) {
+                for (boolean b : changed[t]) anyChanged[t] |= b;
+            }
+        }
+
+        /**
+         *  Fill in the images of some of the rhombs of source.  
+         *  @param start The index of the first rhomb of source.  
+         *  @param end The index after the last rhomb of source.  
+         *  @param offsets The index in this of the image of each rhomb of source.  
+         */
+        private void substitute(int start, int end, int[] offsets) {
+            int n2 = 2*Point.N();
+            int[] shift = new int[dim];
+            for (int i = start; i < end; i++) {
+                // we're leaving this one out
+                if (offsets[i+1]==offsets[i]) continue;
+                int type = source.types[i]-1;
+                // if this one didn't move, only the changed parts of its image need filling in
+                boolean[] only = (moved==null||moved[i]) ? null : changed[type];
+                if (only!=null&&!anyChanged[type]) continue;
+                // the inflated corner of the source rhomb
+                Arrays.fill(shift,0);
+                double sx = 0.0;
+                double sy = 0.0;
+                int base = i*dim;
+                for (int j = 0; j < dim; j++) {
+                    int c = source.coords[base+j];
+                    if (c==0) continue;
+                    for (int k = 0; k < dim; k++) shift[k] += c*matrix[j*dim+k];
+                    sx += c*inflX[j];
+                    sy += c*inflY[j];
+                }
+                int rot = source.angles[i];
+                int a = rot%n2;
+                if (a < 0) a += n2;
+                Tile tile = tiles[type];
+                int to = offsets[i];
+                for (int k = 0; k < tile.size; k++) {
+                    if (only!=null&&!only[k]) {
+                        to++;
+                        continue;
+                    }
+                    if (redone!=null) redone[to] = true;
+                    // look up rhomb k of the rule rotated by a
+                    int t = k*n2+a;
+                    int from = t*dim;
+                    for (int j = 0; j < dim; j++) coords[to*dim+j] = tile.coords[from+j] + shift[j];
+                    xs[to] = tile.xs[t] + sx;
+                    ys[to] = tile.ys[t] + sy;
+                    types[to] = tile.types[k];
+                    angles[to] = tile.angles[t];
+                    v1s[to] = tile.v1s[t];
+                    v2s[to] = tile.v2s[t];
+                    to++;
+                }
+            }
+        }
+
+    } // end of class Substitution
+
+    /**
+     *  Substitution rules, compiled for {@link #substitute(PatchStore,Templates,Point[])}.  
+     *  For each rule, and each of the 2{@link Point#N()} angles, we
+     *  keep the type, angle, edge angles and corner of each rhomb of
+     *  the rule rotated by that angle, so substituting a rhomb only
+     *  takes table lookups and one vector addition for each rhomb of
+     *  its image.  
+     *  Templates don't change when the rules do, so make new ones.  
+     */
+    public static class Templates {
+
+        /** The number of coefficients of a Point.  */
+        private final int dim;
+        /** The rules, one for each type of rhomb.  */
+        private final Tile[] tiles;
+
+        /**
+         *  Find how far the rhombs of the rules reach.  
+         *  @return The greatest distance from the corner of the 
+         *  substituted rhomb to a vertex of a rhomb of a rule, with unit 
+         *  edges.  
+         */
+        public double getRadius() {
+            double output = 0.0;
+            for (Tile t : tiles) output = Math.max(output,t.radius);
+            return output;
+        }
+
+        // private constructor
+        private Templates(List<RhombBoundary> rules) {
+            dim = Point.N()-1;
+            tiles = new Tile[rules.size()];
+            for (int t = 0; t < tiles.length; t++) tiles[t] = new Tile(rules.get(t),dim);
+        }
+
+        /**
+         *  Compare these rules with an older version of them.  
+         *  @param old The rules, compiled before they changed.  
+         *  @return Which rhombs of each rule are different in this and 
+         *  old, or null if the rules have different numbers of rhombs, 
+         *  so we can't compare them rhomb by rhomb.  
+         */
+        public boolean[][] changes(Templates old) {
+            if (old==null||old.dim!=dim||old.tiles.length!=tiles.length) return null;
+            int n2 = 2*Point.N();
+            boolean[][] output = new boolean[tiles.length][];
+            for (int i = 0; i < tiles.length; i++) {
+                Tile t = tiles[i];
+                Tile u = old.tiles[i];
+                if (t.size!=u.size) return null;
+                output[i] = new boolean[t.size];
+                for (int k = 0; k < t.size; k++) {
+                    // the other angles are rotations of angle 0
+                    int a = k*n2;
+                    boolean same = t.types[k]==u.types[k] && t.angles[a]==u.angles[a] && t.v1s[a]==u.v1s[a] && t.v2s[a]==u.v2s[a];
+                    for (int j = 0; same && j < dim; j++) same = t.coords[a*dim+j]==u.coords[a*dim+j];
+                    output[i][k] = !same;
+                }
+            }
+            return output;
+        }
+
+        /**
+         *  Output a String representation of this.  
+         *  @return A String containing the number of rhombs in each rule.  
+         */
+        public String toString() {
+            String output = "Templates for rules of size";
+            for (Tile t : tiles) output += " " + t.size;
+            return output;
+        }
+
+    } // end of class Templates
+
+    /**
+     *  The rhombs of one substitution rule, rotated by every angle.  
+     *  Rhomb k rotated by a is at k*2N+a.  
+     */
+    private static class Tile {
+
+        /** The number of rhombs.  */
+        private final int size;
+        /** The type of each rhomb.  */
+        private final int[] types;
+        /** The angle of each rotated rhomb.  */
+        private final int[] angles;
+        /** The angle of the first edge vector of each rotated rhomb.  */
+        private final int[] v1s;
+        /** The angle of the second edge vector of each rotated rhomb.  */
+        private final int[] v2s;
+        /** The coefficients of the corner of each rotated rhomb, dim at a time.  */
+        private final int[] coords;
+        /** The x-coordinate of the corner of each rotated rhomb.  */
+        private final double[] xs;
+        /** The y-coordinate of the corner of each rotated rhomb.  */
+        private final double[] ys;
+        /** The greatest distance from the origin to a vertex of a rhomb.  */
+        private double radius = 0.0;
+
+        // private constructor
+        private Tile(RhombBoundary rule, int dim) {
+            int n2 = 2*Point.N();
+            List<Rhomb> joins = rule.getJoins();
+            size = joins.size();
+            types = new int[size];
+            angles = new int[size*n2];
+            v1s = new int[size*n2];
+            v2s = new int[size*n2];
+            coords = new int[size*n2*dim];
+            xs = new double[size*n2];
+            ys = new double[size*n2];
+            int k = 0;
+            for (Rhomb R : joins) {
+                SimpleRhomb r = R.createSimpleRhomb();
+                types[k] = r.getType();
+                int a1 = r.v1.unitAngle();
+                int a2 = r.v2.unitAngle();
+                Point2D p = r.getPoint().getPoint2D();
+                Point2D u1 = r.v1.getPoint2D();
+                Point2D u2 = r.v2.getPoint2D();
+                radius = Math.max(radius,Math.hypot(p.x(),p.y()));
+                radius = Math.max(radius,Math.hypot(p.x()+u1.x(),p.y()+u1.y()));
+                radius = Math.max(radius,Math.hypot(p.x()+u2.x(),p.y()+u2.y()));
+                radius = Math.max(radius,Math.hypot(p.x()+u1.x()+u2.x(),p.y()+u1.y()+u2.y()));
+                for (int a = 0; a < n2; a++) {
+                    int t = k*n2+a;
+                    angles[t] = (r.getAngle() + a)%n2;
+                    v1s[t] = (a1 + a)%n2;
+                    v2s[t] = (a2 + a)%n2;
+                    Point q = r.getPoint().rotate(a);
+                    q.copyInto(coords,t*dim);
+                    Point2D q2 = q.getPoint2D();
+                    xs[t] = q2.x();
+                    ys[t] = q2.y();
+                }
+                k++;
+            }
+        }
+
+    } // end of class Tile
+
+    /**
+     *  A task that fills in the images of a range of rhombs, splitting 
+     *  the range in half until it is no longer than {@link #SUBSTITUTION_CHUNK}.  
+     */
+    private static class SubstitutionTask extends RecursiveAction {
+
+        /** For serialization.  */
+        public static final long serialVersionUID = 5517L;
+        /** The data that we need.  */
+        private final Substitution s;
+        /** The index of the first rhomb of the source.  */
+        private final int start;
+        /** The index after the last rhomb of the source.  */
+        private final int end;
+        /** The index of the image of each rhomb of the source.  */
+        private final int[] offsets;
+
+        // private constructor
+        private SubstitutionTask(Substitution s, int start, int end, int[] offsets) {
+            this.s = s;
+            this.start = start;
+            this.end = end;
+            this.offsets = offsets;
+        }
+
+        protected void compute() {
+            if (end-start <= SUBSTITUTION_CHUNK) {
+                s.substitute(start,end,offsets);
+            } else {
+                int middle = (start+end) >>> 1;
+                invokeAll(new SubstitutionTask(s,start,middle,offsets),new SubstitutionTask(s,middle,end,offsets));
+            }
+        }
+
+    } // end of class SubstitutionTask
+
+    /** Make sure that i is the index of a rhomb.  */
+    private void check(int i) {
+        if (i<0||i>=size) throw new IndexOutOfBoundsException("Index " + i + " in a PatchStore of size " + size + ".");
+    }
+
+    /**
+     *  Output a String representation of this.  
+     *  @return A String containing the number of rhombs.  
+     */
+    public String toString() {
+        return "PatchStore with " + size + " rhombs";
+    }
+
+} // end of class PatchStore
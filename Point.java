@@ -1,5 +1,6 @@
 //package Project;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Collections;
@@ -7,6 +8,8 @@ import java.io.*;
 import java.lang.Math.*;
 import java.util.Map;
 import java.util.Stack;
+import java.util.WeakHashMap;
+import java.lang.ref.WeakReference;
 import java.util.AbstractMap.*;
 import java.io.PrintWriter;
 import math.geom2d.Point2D;
@@ -30,9 +33,32 @@ public class Point implements Serializable {
     /** An array of coefficients. */
     private final int[] point;
 
+    /** The hash code, or 0 if we haven't computed it yet.  */
+    private transient int hash;
+
+    /**
+     * If this is one of the Points on the unit circle in {@link #STAR}, 
+     * then this is its index there plus one.  Otherwise it's 0.  
+     */
+    private transient int star;
+
+    /**
+     * The interned Points, as in {@link #intern()}.  
+     * We only keep weak references, so Points that nobody else 
+     * is using can be garbage collected.  
+     */
+    private static final Map<Point,WeakReference<Point>> INTERNED = new WeakHashMap<>();
+
     /** An array of all points that are a distance of 1 from the origin. */
     private static Point[] STAR;
 
+    /**
+     * The matrices of the rotations by all 2N angles.  
+     * Entry j*(N-1)+i of ROTATION[a] is coefficient i of the image 
+     * of the jth basis vector under rotation by a pi/N.  
+     */
+    private static int[][] ROTATION;
+
     /** cos(i pi/N) */ 
     private static double[] COS;
     /** sin(i pi/N) */
@@ -75,8 +101,18 @@ public class Point implements Serializable {
         }
         preStar[N-1] = new Point(plus);
         preStar[2*N-1] = new Point(minus);
+        for (int i = 0; i < 2*N; i++) preStar[i].star = i+1;
         STAR = preStar;
 
+        // the rotation matrices
+        int[][] preRotation = new int[2*N][(N-1)*(N-1)];
+        for (int a = 0; a < 2*N; a++) {
+            for (int j = 0; j < N-1; j++) {
+                System.arraycopy(STAR[(a+j)%(2*N)].point,0,preRotation[a],j*(N-1),N-1);
+            }
+        }
+        ROTATION = preRotation;
+
         double[] preCos = new double[N-1];
         double[] preSin = new double[N-1];
         for (int i = 0; i < N-1; i++) {
@@ -88,6 +124,11 @@ public class Point implements Serializable {
 
         Z = new Point(new int[N-1]);
 
+        // the Points we've interned have the wrong length now
+        synchronized (INTERNED) {
+            INTERNED.clear();
+        }
+
         // change the prefix string for postscript output
         switch (N) {
             case  5:  ORDER = "pent";
@@ -224,12 +265,11 @@ public class Point implements Serializable {
     public static String gapString(int[] angles) {
         boolean first = true;
         String output = "[ ";
+        Accumulator sum = createAccumulator();
         for (int i = 0; i < (N-1); i++) {
-            Point p = Z;
-            for (int j : angles) {
-                int index = (i+j)%(2*N);
-                p = p.plus(STAR[(index>=0) ? index : index + 2*N]);
-            }
+            sum.clear();
+            for (int j : angles) sum.addUnit(i+j);
+            Point p = sum.toPoint();
             if (!first) {
                 output += ", ";
             } else {
@@ -246,13 +286,11 @@ public class Point implements Serializable {
      */
     public static String matrixString(int[] angles) {
         String output = "";
+        Accumulator sum = createAccumulator();
         for (int i = 0; i < (N-1); i++) {
-            Point p = Z;
-            for (int j : angles) {
-                int index = (i+j)%(2*N);
-                p = p.plus(STAR[(index>=0) ? index : index + 2*N]);
-            }
-            output += p.matrixString() + "\n";
+            sum.clear();
+            for (int j : angles) sum.addUnit(i+j);
+            output += sum.toPoint().matrixString() + "\n";
         }
         return output + "";
     } // end of matrixString
@@ -283,6 +321,7 @@ public class Point implements Serializable {
      * same entries in each position.  
      */
     public boolean equals(Object obj) {
+        if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass())
             return false;
         Point l = (Point) obj;
@@ -292,10 +331,72 @@ public class Point implements Serializable {
     }
 
     /**
-     * Currently broken.  
+     * The hash code depends on all of the coefficients, so it is 
+     * consistent with {@link #equals(Object)}.  
+     * Points don't change, so we only compute it once.  
      */
     public int hashCode() {
-        return 19;
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(point);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Package-private static factory method.  
+     * Make a Point from coefficients stored in a larger array, as in a 
+     * {@link PatchStore}.  
+     * @param coefficients An array containing the coefficients.  
+     * @param offset The position of the first coefficient.  
+     * @return A Point with the {@link #N()}-1 coefficients starting at offset.  
+     */
+    static Point createPoint(int[] coefficients, int offset) {
+        return new Point(Arrays.copyOfRange(coefficients,offset,offset+N-1));
+    }
+
+    /**
+     * Copy the coefficients of this Point into a larger array.  
+     * @param output The array into which we copy the coefficients.  
+     * @param offset The position at which we put the first coefficient.  
+     */
+    void copyInto(int[] output, int offset) {
+        System.arraycopy(point,0,output,offset,point.length);
+    }
+
+    /**
+     * Find the angle of this Point, if it's on the unit circle.  
+     * @return The angle i such that this equals {@link #createPoint(int)} 
+     * with argument i, or -1 if there is no such angle.  
+     */
+    int unitAngle() {
+        if (star > 0) return star-1;
+        for (int i = 0; i < 2*N; i++) if (STAR[i].equals(this)) return i;
+        return -1;
+    }
+
+    /**
+     * Return the canonical Point equal to this one.  
+     * The first time we intern a Point with given coefficients, we keep 
+     * it in a table keyed by its coefficients.  After that, interning an 
+     * equal Point returns the one from the table, so equal Points that 
+     * have been interned are the same object and share one array of 
+     * coefficients.  
+     * The table is cleared when we change {@link #N()}.  
+     * @return A Point equal to this, which is the same object for all 
+     * equal Points.  
+     */
+    public Point intern() {
+        synchronized (INTERNED) {
+            WeakReference<Point> ref = INTERNED.get(this);
+            Point output = (ref == null) ? null : ref.get();
+            if (output == null) {
+                output = this;
+                INTERNED.put(this,new WeakReference<>(this));
+            }
+            return output;
+        }
     }
 
     /**
@@ -328,13 +429,45 @@ public class Point implements Serializable {
      * @return The Point that results from the rotation.  
      */
     public Point rotate(int angle) {
-        int[] output = new int[N-1];
-        for (int i = 0; i < output.length; i++) {
-            for (int j = 0; j < output.length; j++) {
-                output[i] += this.point[j]*STAR[(angle+j)%(2*N)].point[i];
-            }
+        int a = angle%(2*N);
+        if (a < 0) a += 2*N;
+        // Points on the unit circle just move around the circle
+        if (star > 0) return STAR[(star-1+a)%(2*N)];
+        return new Point(rotateInto(a,new int[N-1]));
+    }
+
+    /**
+     * Rotate this Point about the origin by the given angle, and then 
+     * add another Point.  
+     * This is the same as rotate(angle).plus(move), but it only makes 
+     * one new Point.  
+     * @param angle The angle of rotation.  
+     * @param move The Point we add after rotating.  
+     * @return The Point that results from the rotation and translation.  
+     */
+    public Point rotate(int angle, Point move) {
+        int a = angle%(2*N);
+        if (a < 0) a += 2*N;
+        return new Point(rotateInto(a,move.point.clone()));
+    }
+
+    /**
+     * Add the image of this Point under a rotation to an array 
+     * of coefficients, using the precomputed rotation matrix.  
+     * @param a The angle of rotation, between 0 and 2N-1.  
+     * @param output The coefficients to which we add the image.  
+     * @return output.  
+     */
+    private int[] rotateInto(int a, int[] output) {
+        int[] m = ROTATION[a];
+        int n = output.length;
+        for (int j = 0; j < n; j++) {
+            int c = point[j];
+            if (c==0) continue;
+            int row = j*n;
+            for (int i = 0; i < n; i++) output[i] += c*m[row+i];
         }
-        return new Point(output);
+        return output;
     }
 
     /**
@@ -350,10 +483,9 @@ public class Point implements Serializable {
      */
     public static Point[] inflation(int[] seq) {
         Point[] output = new Point[N-1];
-        Point base = Point.Z;
-        for (int i = 0; i < seq.length; i++) {
-            base = base.plus(STAR[(seq[i]%(2*N)<0) ? (seq[i]%(2*N))+2*N : (seq[i]%(2*N))]);
-        }
+        Accumulator sum = createAccumulator();
+        for (int i = 0; i < seq.length; i++) sum.addUnit(seq[i]);
+        Point base = sum.toPoint();
         for (int i = 0; i < N-1; i++) {
             output[i] = base.rotate(i);
         }
@@ -377,6 +509,127 @@ public class Point implements Serializable {
         return new Point(output);
     }
 
+    /**
+     * Public static factory method.  
+     * @return An {@link Accumulator} containing the zero vector.  
+     */
+    public static Accumulator createAccumulator() {
+        return new Accumulator();
+    }
+
+    /**
+     * A mutable Point, for adding up lots of Points without making a 
+     * new Point (and a new array) at each step, as {@link #plus(Point)} 
+     * does.  
+     * Each method changes this Accumulator and returns it, so they can 
+     * be chained.  When we're done, {@link #toPoint()} makes a Point 
+     * with the sum.  
+     * An Accumulator has {@link #N()}-1 coefficients, so don't keep one 
+     * after changing N.  
+     */
+    public static class Accumulator {
+
+        /** The coefficients of the sum so far.  */
+        private final int[] sum;
+
+        // private constructor
+        private Accumulator() {
+            sum = new int[N-1];
+        }
+
+        /**
+         * Set the sum to zero.  
+         * @return This Accumulator.  
+         */
+        public Accumulator clear() {
+            Arrays.fill(sum,0);
+            return this;
+        }
+
+        /**
+         * Set the sum to a given Point.  
+         * @param p The new value of the sum.  
+         * @return This Accumulator.  
+         */
+        public Accumulator set(Point p) {
+            System.arraycopy(p.point,0,sum,0,sum.length);
+            return this;
+        }
+
+        /**
+         * Add a Point to the sum.  
+         * @param p The Point we add.  
+         * @return This Accumulator.  
+         */
+        public Accumulator add(Point p) {
+            for (int i = 0; i < sum.length; i++) sum[i] += p.point[i];
+            return this;
+        }
+
+        /**
+         * Subtract a Point from the sum.  
+         * @param p The Point we subtract.  
+         * @return This Accumulator.  
+         */
+        public Accumulator subtract(Point p) {
+            for (int i = 0; i < sum.length; i++) sum[i] -= p.point[i];
+            return this;
+        }
+
+        /**
+         * Add the Point on the unit circle at a given angle, as in 
+         * {@link Point#createPoint(int)}.  
+         * @param angle The angle, as an integer multiple of pi/N.  
+         * @return This Accumulator.  
+         */
+        public Accumulator addUnit(int angle) {
+            return add(createPoint(angle));
+        }
+
+        /**
+         * Add a Point, rotated about the origin, as in {@link Point#rotate(int)}.  
+         * @param p The Point we rotate and add.  
+         * @param angle The angle of rotation.  
+         * @return This Accumulator.  
+         */
+        public Accumulator addRotated(Point p, int angle) {
+            int a = angle%(2*N);
+            if (a < 0) a += 2*N;
+            p.rotateInto(a,sum);
+            return this;
+        }
+
+        /**
+         * Make a Point with the sum.  The Accumulator can still be used.  
+         * @return A Point equal to the sum so far.  
+         */
+        public Point toPoint() {
+            return new Point(sum.clone());
+        }
+
+        /**
+         * The sum in Cartesian coordinates, as in {@link Point#getPoint2D()}.  
+         * @return A Point2D representation of the sum so far.  
+         */
+        public Point2D getPoint2D() {
+            double x = 0.0;
+            double y = 0.0;
+            for (int i = 0; i < sum.length; i++) {
+                x += COS[i]*sum[i];
+                y += SIN[i]*sum[i];
+            }
+            return new Point2D(x,y);
+        }
+
+        /**
+         * Output a String representation of this.  
+         * @return The coefficients of the sum, as in {@link Point#toString()}.  
+         */
+        public String toString() {
+            return toPoint().toString();
+        }
+
+    } // end of class Accumulator
 
     /** For testing.  */
     public static void main(String[] args) {
@@ -0,0 +1,43 @@
+/**
+ *  A {@link WorkUnit} that searches a range of consecutive items,
+ *  indexed by rank, and sends what it finds to a {@link ResultSink}
+ *  as soon as it finds it.  
+ *  Because the range can be changed, one of these can describe a whole
+ *  search, and copies of it with smaller ranges can be handed out to
+ *  different threads, or to different machines by a {@link SearchCoordinator}.  
+ *  The sink isn't sent with the work unit, so whoever runs a copy
+ *  gives it a sink of their own.  
+ */
+public interface RangeWorkUnit extends WorkUnit
+{
+    /**
+     *  The index of the first item in the range.  
+     *  @return The rank at which the range starts.  
+     */
+    public long getStart();
+
+    /**
+     *  The number of items in the range.  
+     *  @return The length of the range.  
+     */
+    public long getMax();
+
+    /**
+     *  Make a WorkUnit that is the same as this one, except that
+     *  it searches a different range and sends what it finds to a
+     *  different sink.  
+     *  @param start The index of the first item to search.  
+     *  @param max The number of items to search.  
+     *  @param sink Receives what we find.  
+     *  @return A copy of this that searches max items, starting at start.  
+     */
+    public RangeWorkUnit range(long start, long max, ResultSink sink);
+
+    /**
+     *  Search the range.  
+     *  @return A {@link Result} whose {@link Result#getProcessed()} is the
+     *  number of items searched.  If we stopped early, these are the
+     *  first ones in the range.  
+     */
+    public Result call();
+}
@@ -15,5 +15,25 @@ public interface Result extends Serializable
     public static final Result JOB_COMPLETE = new Result() {
         public String toString() { return "job complete"; } };
 
+    /**
+     *  How many items of work were done.  A {@link WorkUnit} that stops 
+     *  early (see {@link WorkUnit#stopRequested()}) uses this to say 
+     *  how far it got.  
+     *  @return The number of items done, or 0 if this isn't counted.  
+     */
+    public default long getProcessed()
+    {
+        return 0L;
+    }
+
+    /**
+     *  Did the {@link WorkUnit} that produced this do all of its work?  
+     *  @return false if it was interrupted, failed, or stopped early.  
+     */
+    public default boolean isComplete()
+    {
+        return this != JOB_FAILED && this != JOB_INTERRUPTED && this != JOB_UNAVAILABLE;
+    }
+
     public String toString();
 }
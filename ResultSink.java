@@ -0,0 +1,98 @@
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ *  A destination for the valid edge sequences found by
+ *  {@link RhombBoundary#allValid(int[],boolean,java.util.List,int[],int[],ResultSink)}.  
+ *  Each valid sequence is handed to the sink as soon as the worker
+ *  thread that found it has finished checking it, so the methods of
+ *  a ResultSink may be called from many threads at once and must be
+ *  thread-safe.  
+ */
+public interface ResultSink
+{
+    /**
+     *  A sink that writes each sequence to stdout on a line of the form
+     *  <code>result: a b c </code>.  This is what allValid has always done.  
+     */
+    public static final ResultSink STDOUT = new ResultSink() {
+        public void accept(int[] sequence) {
+            synchronized (System.out) {
+                System.out.print("result: ");
+                for (int t : sequence) System.out.print(t + " ");
+                System.out.print("\n");
+            }
+        }
+        public void done() { }
+        public String toString() { return "stdout result sink"; } };
+
+    /**
+     *  The array that a queue sink puts on its queue when the search is
+     *  finished.  Compare against it using ==.  
+     */
+    public static final int[] END_OF_RESULTS = new int[0];
+
+    /**
+     *  Receive a valid edge sequence.  
+     *  The sink may keep the array; the search does not reuse it.  
+     *  @param sequence A valid edge sequence.  
+     */
+    public void accept(int[] sequence);
+
+    /**
+     *  Called exactly once, after the last sequence has been accepted.  
+     */
+    public void done();
+
+    /**
+     *  Public static factory method.  
+     *  Create a sink that writes each sequence to a file, one sequence
+     *  per line with entries separated by spaces.  
+     *  Every line is flushed as it is written, so the file can be read
+     *  while the search is still running.  The file is closed when the
+     *  search is done.  
+     *  @param fileName The name of the file to write to.  
+     *  @return A sink that writes to fileName.  
+     *  @throws IOException If the file cannot be opened.  
+     */
+    public static ResultSink createFileSink(String fileName) throws IOException {
+        final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+        return new ResultSink() {
+            public synchronized void accept(int[] sequence) {
+                for (int j = 0; j < sequence.length; j++) {
+                    if (j > 0) out.print(" ");
+                    out.print(sequence[j]);
+                }
+                out.println();
+                out.flush();
+            }
+            public synchronized void done() {
+                out.close();
+            }
+            public String toString() { return "file result sink: " + fileName; } };
+    }
+
+    /**
+     *  Public static factory method.  
+     *  Create a sink that puts each sequence on a queue, so that another
+     *  thread can consume the results while the search is running.  
+     *  When the search is done, {@link #END_OF_RESULTS} is put on the queue.  
+     *  @param queue The queue to which we add the sequences.  
+     *  @return A sink that writes to queue.  
+     */
+    public static ResultSink createQueueSink(final BlockingQueue<int[]> queue) {
+        return new ResultSink() {
+            public void accept(int[] sequence) {
+                try {
+                    queue.put(sequence);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            public void done() {
+                accept(END_OF_RESULTS);
+            }
+            public String toString() { return "queue result sink"; } };
+    }
+
+} // end of interface ResultSink
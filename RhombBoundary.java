@@ -1,7 +1,11 @@
+import java.util.BitSet;
 import java.util.Deque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.Collections;
 import java.util.concurrent.*;
 import java.io.*;
@@ -29,10 +33,23 @@ public class RhombBoundary implements Serializable {
     /** For serialization. */
     public static final long serialVersionUID = 5510L;
 
-    /** Number of permutations in a WorkUnit.  */
+    /** Maximum number of permutations in a WorkUnit.  */
     public static final int WORK_UNIT_LENGTH = 1000;
-    /** Number of permutations we create before stopping to output interim results.  */
-    public static final int BATCH_SIZE = 100*WORK_UNIT_LENGTH;
+
+    /** Maximum number of boundaries whose threadings we remember.  */
+    public static final int THREADING_CACHE_SIZE = 256;
+
+    /**
+     * The crossings that the Yarns got when we threaded recently 
+     * created boundaries, so that if we create the same boundary again 
+     * we can copy them instead of threading the Yarns again.  
+     * The least recently used boundary is forgotten first.  
+     */
+    private static final Map<ThreadingKey,int[][]> THREADINGS = Collections.synchronizedMap(new LinkedHashMap<ThreadingKey,int[][]>(16,0.75f,true) {
+        protected boolean removeEldestEntry(Map.Entry<ThreadingKey,int[][]> eldest) {
+            return size() > THREADING_CACHE_SIZE;
+        }
+    });
 
     /** The number of subedges.  */
     private int l;
@@ -74,6 +91,18 @@ public class RhombBoundary implements Serializable {
      */
     private final boolean valid;
 
+    /**
+     * The base points of the Termini, as in {@link #base(int)}, so 
+     * bases[i] is the sum of the unit vectors at the angles of the 
+     * first i+1 Termini.  These are prefix sums, which we compute once 
+     * and then update when the angles of the Termini change.  
+     * null until we need them.  
+     */
+    private transient Point[] bases;
+
+    /** The angles of the Termini when we last updated {@link #bases}.  */
+    private transient int[] baseAngles;
+
     /**
      * Public constructor.  
      * @param angles A list of angle differences.  These should be integers
@@ -89,15 +118,22 @@ public class RhombBoundary implements Serializable {
         n = Point.N();
         l = angles.length;
         termini = new Terminus[l];
-        allJoins = new LinkedList<>();
-        edgeJoins = new LinkedList<>();
+        allJoins = IndexedList.createIndexedList();
+        edgeJoins = IndexedList.createIndexedList();
         for (int j = 0; j < l; j++) {
             termini[j] = Terminus.createTerminus(j,angles[j]);
         }
 
         placeYarns(sym);
-        if (sym) symmetricThreadYarnsKKS();
-        else threadYarnsKKS();
+        ThreadingKey key = new ThreadingKey(angles,sym);
+        int[][] threading = THREADINGS.get(key);
+        if (threading==null) {
+            if (sym) symmetricThreadYarnsKKS();
+            else threadYarnsKKS();
+            THREADINGS.put(key,threading());
+        } else {
+            threadYarns(threading);
+        }
         valid = getValid();
         if (!valid) return;
         setJoins();
@@ -107,7 +143,8 @@ public class RhombBoundary implements Serializable {
 
     /**
      * Private constructor.  
-     * We just specify every field.  
+     * We just specify every field.  The Lists are copied into indexed 
+     * Lists (see {@link #index()}).  
      */
     private RhombBoundary(int l,int n,Terminus[] termini,Yarn[] yarns,List<Rhomb> allJoins,List<Rhomb> edgeJoins,List<Hex> triples,boolean valid) {
         this.l = l;
@@ -118,8 +155,23 @@ public class RhombBoundary implements Serializable {
         this.edgeJoins = edgeJoins;
         this.triples = triples;
         this.valid = valid;
+        index();
     } // end of constructor
 
+    /**
+     * Replace the Lists of Joins and Triples with {@link IndexedList}s, 
+     * if they aren't already, so that {@link #flipTriple(Hex)} and 
+     * {@link #collapse(Rhomb)} can find things in them in constant time.  
+     * If allJoins and edgeJoins are the same List, they stay that way.  
+     */
+    private void index() {
+        boolean same = (edgeJoins==allJoins);
+        if (!(allJoins instanceof IndexedList)) allJoins = IndexedList.createIndexedList(allJoins);
+        if (same) edgeJoins = allJoins;
+        else if (!(edgeJoins instanceof IndexedList)) edgeJoins = IndexedList.createIndexedList(edgeJoins);
+        if (triples!=null&&!(triples instanceof HexList)) triples = HexList.createHexList(triples);
+    }
+
     /** Method for saving and restoring.  */
     private void writeObject(ObjectOutputStream stream) throws IOException {
         stream.writeObject(n);
@@ -131,18 +183,28 @@ public class RhombBoundary implements Serializable {
         n = (int) stream.readObject();
         Point.setN(n);
         stream.defaultReadObject();
+        YarnArrangement.restore(yarns);
+        index();
     }
 
     /**
      * A class for creating and checking the validity of many RhombBoundaries.  
+     * It checks a range of consecutive permutations of a multiset, in the 
+     * order given by {@link MultiSetPermutation}.  
+     * All of the buffers it needs are allocated once, at the start of 
+     * {@link #call()}, so stepping from one permutation to the next allocates nothing.  
      * Produces {@link BoundaryResult}s.  
+     * A BoundaryWorkUnit can be sent to another JVM by a {@link SearchCoordinator}; 
+     * it takes the value of {@link Point#N()} with it.  
      */
-    private static class BoundaryWorkUnit implements WorkUnit
+    private static class BoundaryWorkUnit implements RangeWorkUnit
     {
-        /** Produces permutations of a multiset.  */
-        private MultiSetLinkedList m;
+        /** The multiset whose permutations we search.  */
+        private final int[] multiset;
+        /** The index of the first permutation to search.  */
+        private final long start;
         /** The number of permutations to search.  */
-        private final int max;
+        private final long max;
         /** Do we search symmetric boundaries?  */
         private final boolean sym;
         /** A sequence that we prepend to the permutation.  */
@@ -154,45 +216,59 @@ public class RhombBoundary implements Serializable {
          * subsequences as single numbers, thereby reducing the
          * total number of permutations we need to search if we
          * know that only certain subsequences will occur.  
+         * The nth entry is the sequence that replaces n and -n.  
          */
-        private List<List<Integer>> rule = null;
+        private int[][] rule = null;
+        /** Where we send the valid sequences as soon as we find them.  */
+        private transient ResultSink sink;
+        /** The symmetries of the search, or null if we're not using them.  */
+        private EdgeSymmetry symmetry = null;
+        /** Do we send the whole orbit of each valid permutation to the sink?  */
+        private boolean expand = true;
+        /** The search that this is part of, or null.  */
+        private transient BoundarySearch search = null;
 
         /**
          * Public constructor.  
-         * @param M The object we use to produce permutations.  
-         * @param max The maximum number of permutations we'll create.  
+         * @param multiset The multiset whose permutations we search.  
+         * @param start The index of the first permutation to search.  
+         * @param max The number of permutations to search.  
          * @param sym Tells us if the RhombBoundaries that we create 
          * and search should be symmetric.  
+         * @param sink Receives the valid sequences.  
          */
-        public BoundaryWorkUnit(MultiSetLinkedList M, int max, boolean sym) {
-            this.m = M;
+        public BoundaryWorkUnit(int[] multiset, long start, long max, boolean sym, ResultSink sink) {
+            this.multiset = multiset;
+            this.start = start;
             this.max = max;
             this.sym = sym;
+            this.sink = sink;
         }
 
         /**
          * Public constructor.  
-         * Same as {@link #BoundaryWorkUnit(MultiSetLinkedList,int,boolean)}, except it includes an integer substitution rule to abgreviate sequences.  
-         * @param M The object we use to produce permutations.  
-         * @param max The maximum number of permutations we'll create.  
+         * Same as {@link #BoundaryWorkUnit(int[],long,long,boolean,ResultSink)}, except it includes an integer substitution rule to abgreviate sequences.  
+         * @param multiset The multiset whose permutations we search.  
+         * @param start The index of the first permutation to search.  
+         * @param max The number of permutations to search.  
          * @param r An integer substitution rule that tells us how to encode 
          * subsequences so that a proper subset of the set of all permutations
          * can be searched.  
          * @param sym Tells us if the RhombBoundaries that we create 
          * and search should be symmetric.  
+         * @param sink Receives the valid sequences.  
          */
-        public BoundaryWorkUnit(MultiSetLinkedList M, int max, boolean sym, List<List<Integer>> r) {
-            this.m = M;
-            this.max = max;
-            this.sym = sym;
-            this.rule = r;
+        public BoundaryWorkUnit(int[] multiset, long start, long max, boolean sym, List<List<Integer>> r, ResultSink sink) {
+            this(multiset,start,max,sym,sink);
+            this.rule = ruleArray(r);
         }
 
         /**
          * Public constructor.  
-         * Same as {@link #BoundaryWorkUnit(MultiSetLinkedList,int,boolean,List<List<Integer>>)}, except it includes a prefix and suffix.  
-         * @param M The object we use to produce permutations.  
-         * @param max The maximum number of permutations we'll create.  
+         * Same as {@link #BoundaryWorkUnit(int[],long,long,boolean,List<List<Integer>>,ResultSink)}, except it includes a prefix and suffix.  
+         * @param multiset The multiset whose permutations we search.  
+         * @param start The index of the first permutation to search.  
+         * @param max The number of permutations to search.  
          * @param r An integer substitution rule that tells us how to encode 
          * subsequences so that a proper subset of the set of all permutations
          * can be searched.  
@@ -200,115 +276,715 @@ public class RhombBoundary implements Serializable {
          * and search should be symmetric.  
          * @param pre A list of ints to prepend to each permutation.  
          * @param suf A list of ints to append to each permutation.  
+         * @param sink Receives the valid sequences.  
          */
-        public BoundaryWorkUnit(MultiSetLinkedList M, int max, boolean sym, List<List<Integer>> r, int[] pre, int[] suf) {
-            this.m = M;
-            this.max = max;
-            this.sym = sym;
-            this.rule = r;
+        public BoundaryWorkUnit(int[] multiset, long start, long max, boolean sym, List<List<Integer>> r, int[] pre, int[] suf, ResultSink sink) {
+            this(multiset,start,max,sym,r,sink);
             this.prefix = pre;
             this.suffix = suf;
         }
 
         /**
-         * Given an int array input and an Integer List rule, 
-         * return a new int array in which each entry of input 
+         * Private constructor.  
+         * Copy w, but search a different range of permutations.  
+         */
+        private BoundaryWorkUnit(BoundaryWorkUnit w, long start, long max) {
+            this.multiset = w.multiset;
+            this.start = start;
+            this.max = max;
+            this.sym = w.sym;
+            this.prefix = w.prefix;
+            this.suffix = w.suffix;
+            this.rule = w.rule;
+            this.sink = w.sink;
+            this.symmetry = w.symmetry;
+            this.expand = w.expand;
+            this.search = w.search;
+        }
+
+        /**
+         * Only test one permutation from each orbit of the symmetries 
+         * of the search (see {@link EdgeSymmetry}).  
+         * This does nothing if we are searching symmetric boundaries, 
+         * because they don't have these symmetries.  
+         * @param expand If true, send every permutation in the orbit of 
+         * each valid permutation to the sink.  Otherwise just send the 
+         * one that we tested.  
+         */
+        public void reduceSymmetry(boolean expand) {
+            if (!sym) symmetry = EdgeSymmetry.createEdgeSymmetry(multiset,prefix,suffix,rule);
+            this.expand = expand;
+        }
+
+        /**
+         * Make a WorkUnit that is the same as this one, except that 
+         * it searches a different range of permutations.  
+         * @param start The index of the first permutation to search.  
+         * @param max The number of permutations to search.  
+         * @return A copy of this that searches max permutations, 
+         * starting at start.  
+         */
+        public BoundaryWorkUnit range(long start, long max) {
+            return new BoundaryWorkUnit(this,start,max);
+        }
+
+        /**
+         * Make a WorkUnit that is the same as this one, except that 
+         * it searches a different range of permutations and sends 
+         * the valid ones to a different sink.  
+         * @param start The index of the first permutation to search.  
+         * @param max The number of permutations to search.  
+         * @param sink Receives the valid sequences.  
+         * @return A copy of this that searches max permutations, 
+         * starting at start.  
+         */
+        public BoundaryWorkUnit range(long start, long max, ResultSink sink) {
+            BoundaryWorkUnit output = new BoundaryWorkUnit(this,start,max);
+            output.sink = sink;
+            return output;
+        }
+
+        /** Method for sending to another JVM.  */
+        private void writeObject(ObjectOutputStream stream) throws IOException {
+            stream.writeObject(Point.N());
+            stream.defaultWriteObject();
+        }
+
+        /**
+         * Method for receiving from another JVM.  
+         * Other threads may be searching with the same value of N, so 
+         * we only change it (which rebuilds the tables in {@link Point}) 
+         * if it's different.  
+         */
+        private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+            int n = (int) stream.readObject();
+            synchronized (Point.class) {
+                if (n != Point.N()) Point.setN(n);
+            }
+            stream.defaultReadObject();
+        }
+
+        /**
+         * Stop when a search is cancelled.  
+         * @param search The search that this is part of.  
+         */
+        public void setSearch(BoundarySearch search) {
+            this.search = search;
+        }
+
+        /**
+         * Should we stop before we've finished our range?  
+         * @return true if our search has been cancelled or our 
+         * thread has been interrupted.  
+         */
+        public boolean stopRequested() {
+            return (search!=null && search.isCancelled()) || RangeWorkUnit.super.stopRequested();
+        }
+
+        /** Getter method.  */
+        public ResultSink getSink() {
+            return sink;
+        }
+
+        /** Getter method.  */
+        public long getStart() {
+            return start;
+        }
+
+        /** Getter method.  */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Convert a number substitution rule to an array of arrays, 
+         * so that we don't have to unbox anything while searching.  
+         * @param rule A list of lists.  The nth entry tells us how to replace 
+         * the number n.  
+         * @return The same rule, as an array of arrays.  
+         */
+        private static int[][] ruleArray(List<List<Integer>> rule) {
+            if (rule==null) return null;
+            int[][] output = new int[rule.size()][];
+            for (int i = 0; i < output.length; i++) {
+                output[i] = new int[rule.get(i).size()];
+                for (int j = 0; j < output[i].length; j++) output[i][j] = rule.get(i).get(j);
+            }
+            return output;
+        }
+
+        /**
+         * The length of the sequence we get by applying a 
+         * substitution rule to input.  
+         * @param input The sequence we are decoding.  
+         * @param rule The rule that tells us what subsequences we use 
+         * to replace the various symbols in input.  
+         * @return The length of the decoded sequence.  
+         */
+        private static int substitutedLength(int[] input, int[][] rule) {
+            int output = 0;
+            for (int i = 0; i < input.length; i++) {
+                output += (Math.abs(input[i])<rule.length) ? rule[Math.abs(input[i])].length : 1;
+            }
+            return output;
+        }
+
+        /**
+         * Given an int array input and an int array rule, 
+         * fill output with the sequence in which each entry of input 
          * has been replaced with the sequence at the 
          * corresponding position in rule (or the negative of 
          * the absolute value of the corresponding position).  
          * @param input The sequence we are decoding.  
          * @param rule The rule that tells us what subsequences we use 
          * to replace the various symbols in input.  
-         * @return The sequence input, with each symbol replaced by the 
-         * subsequence that appears at the corresponding position in rule.  
+         * @param output The array in which we write the sequence input, with 
+         * each symbol replaced by the subsequence that appears at the 
+         * corresponding position in rule.  It must have length 
+         * {@link #substitutedLength(int[],int[][])}.  
          */
-        public static int[] substitute(int[] input, List<List<Integer>> rule)
+        public static void substitute(int[] input, int[][] rule, int[] output)
         {
-            // first make a List
-            List<Integer> output = new LinkedList<>();
+            int k = 0;
             for (int i = 0; i < input.length; i++) {
-                if (Math.abs(input[i])<rule.size()) {
-                    for (Integer j : rule.get(Math.abs(input[i]))) output.add(j);
+                if (Math.abs(input[i])<rule.length) {
+                    int[] r = rule[Math.abs(input[i])];
+                    System.arraycopy(r,0,output,k,r.length);
+                    k += r.length;
                 } else {
-                    output.add(input[i]);
+                    output[k++] = input[i];
                 }
             }
-            // now convert it into an array
-            int[] o = new int[output.size()];
-            for (int i = 0; i < o.length; i++) o[i] = output.get(i);
-            return o;
         }
 
         /**
-         * Concatenate two int arrays.  
-         * @param first The first int array.  
-         * @param second The second int array.  
-         * @return The array obtained by concatenating first and second.  
+         * Call this work unit.  
+         * Every permutation in our range that produces 
+         * valid RhombBoundaries is sent to the sink as soon as it 
+         * has been checked.  
+         * We build the edge sequence one symbol at a time in a 
+         * {@link PartialBoundary} for each prototile, and as soon as 
+         * one of them tells us that the symbols so far can't be 
+         * completed to a valid sequence, we skip all the permutations 
+         * that begin with those symbols.  
+         * If the multiset is such that we can't make PartialBoundaries, 
+         * we check each permutation separately instead, using 
+         * {@link #callExhaustive()}.  
+         * If {@link #stopRequested()} becomes true, we stop before the 
+         * next permutation.  
+         * @return A result containing the number of valid permutations 
+         * that we found and the number of permutations that we searched.  
          */
-        public static int[] concatenate(int[] first, int[] second) {
-            int[] output = new int[first.length+second.length];
-            for (int i = 0; i < first.length; i++) output[i] = first[i];
-            for (int i = 0; i < second.length; i++) output[i+first.length] = second[i];
-            return output;
+        public BoundaryResult call()
+        {
+            MultiSetPermutation m = MultiSetPermutation.createMultiSetPermutation(multiset);
+            int[] perm = m.current();
+            int pre = (prefix==null) ? 0 : prefix.length;
+            int suf = (suffix==null) ? 0 : suffix.length;
+            // the permutation with the prefix and suffix attached
+            int[] word = new int[pre+perm.length+suf];
+            if (prefix!=null) System.arraycopy(prefix,0,word,0,pre);
+            if (suffix!=null) System.arraycopy(suffix,0,word,pre+perm.length,suf);
+            System.arraycopy(perm,0,word,pre,perm.length);
+            // the decoded word has the same angles for every permutation
+            int[] angles = (rule==null) ? word : new int[substitutedLength(word,rule)];
+            if (rule!=null) substitute(word,rule,angles);
+            PartialBoundary[] boundaries = new PartialBoundary[(Point.N())/2];
+            try {
+                for (int k = 0; k < boundaries.length; k++) boundaries[k] = PartialBoundary.createPartialBoundary(Point.N()-1-2*k,angles,sym);
+            } catch (IllegalArgumentException e) {
+                return callExhaustive();
+            }
+
+            m.unrank(start);
+            long end = start + max;
+            int found = 0;
+            for (int i = 0; i < pre; i++) {
+                if (!push(boundaries,prefix[i])) return new BoundaryResult(0,max,true);
+            }
+            // sizes[k] is the length of the sequence with k symbols of the permutation
+            int[] sizes = new int[perm.length+1];
+            sizes[0] = boundaries[0].size();
+            int depth = 0;
+            boolean more = true;
+            while (more) {
+                if (stopRequested()) return new BoundaryResult(found,m.rank()-start,false);
+                // forget the symbols that have changed
+                depth = Math.min(depth,m.firstChanged());
+                for (PartialBoundary b : boundaries) b.popTo(sizes[depth]);
+                boolean valid = true;
+                while (valid && depth < perm.length) {
+                    valid = push(boundaries,perm[depth]);
+                    depth++;
+                    sizes[depth] = boundaries[0].size();
+                    if (valid && symmetry!=null) valid = symmetry.prefixCanonical(perm,depth);
+                }
+                if (valid && symmetry!=null) valid = symmetry.isCanonical(perm);
+                if (valid) {
+                    for (int i = 0; i < suf; i++) valid = push(boundaries,suffix[i]) && valid;
+                    if (valid) {
+                        sink.accept(Arrays.copyOf(boundaries[0].getSequence(),boundaries[0].size()));
+                        found++;
+                        if (symmetry!=null && expand) found += acceptOrbit(perm);
+                    }
+                    for (PartialBoundary b : boundaries) b.popTo(sizes[depth]);
+                    more = m.next();
+                } else {
+                    more = m.skip(depth);
+                }
+                if (m.rank() >= end) break;
+            }
+            return new BoundaryResult(found,max,true);
         }
 
         /**
-         * Call this work unit.  
-         * @return A result without much content.  The actual information 
-         * we want is output to the terminal.  This output consists of a 
-         * list of all permutations of the starting multiset that produce
-         * valid RhombBoundaries.  
+         * Send the decoded images of a permutation under the symmetries 
+         * to the sink, leaving out the ones that are the same as the 
+         * permutation itself or each other.  
+         * @param perm A valid permutation.  
+         * @return The number of images sent to the sink.  
          */
-        public BoundaryResult call()
+        private int acceptOrbit(int[] perm) {
+            List<int[]> images = new ArrayList<>();
+            images.add(perm.clone());
+            for (int g = 0; g < symmetry.size(); g++) {
+                int[] image = symmetry.image(g,perm);
+                boolean seen = false;
+                for (int[] i : images) if (Arrays.equals(i,image)) seen = true;
+                if (seen) continue;
+                images.add(image.clone());
+                int pre = (prefix==null) ? 0 : prefix.length;
+                int suf = (suffix==null) ? 0 : suffix.length;
+                int[] word = new int[pre+image.length+suf];
+                if (prefix!=null) System.arraycopy(prefix,0,word,0,pre);
+                System.arraycopy(image,0,word,pre,image.length);
+                if (suffix!=null) System.arraycopy(suffix,0,word,pre+image.length,suf);
+                if (rule==null) {
+                    sink.accept(word);
+                } else {
+                    int[] decoded = new int[substitutedLength(word,rule)];
+                    substitute(word,rule,decoded);
+                    sink.accept(decoded);
+                }
+            }
+            return images.size()-1;
+        }
+
+        /**
+         * Add the symbol x to the end of each PartialBoundary, 
+         * after replacing it with a sequence using the rule.  
+         * @param boundaries The PartialBoundaries, one for each prototile.  
+         * @param x The symbol to add.  
+         * @return false if it is certain that at least one of the 
+         * PartialBoundaries can't be completed to a valid boundary.  
+         */
+        private boolean push(PartialBoundary[] boundaries, int x) {
+            boolean valid = true;
+            if (rule!=null&&Math.abs(x)<rule.length) {
+                for (int a : rule[Math.abs(x)]) {
+                    for (PartialBoundary b : boundaries) valid = b.push(a) && valid;
+                }
+            } else {
+                for (PartialBoundary b : boundaries) valid = b.push(x) && valid;
+            }
+            return valid;
+        }
+
+        /**
+         * Check every permutation in our range separately, using 
+         * {@link RhombBoundary#isTileable(int,int[],boolean)}.  
+         * This is what {@link #call()} does when it can't use 
+         * {@link PartialBoundary}s.  
+         * @return A result containing the number of valid permutations 
+         * that we found and the number of permutations that we searched.  
+         */
+        private BoundaryResult callExhaustive()
         {
-            List<int[]> output = new LinkedList<>();
-            for (int i = 0; i < max; i++) {
-                int[] current = m.getArray();
-                if (prefix!=null) current = concatenate(prefix,current);
-                if (suffix!=null) current = concatenate(current,suffix);
-                if (rule!=null) current = substitute(current,rule);
+            MultiSetPermutation m = MultiSetPermutation.createMultiSetPermutation(multiset);
+            m.unrank(start);
+            int[] perm = m.current();
+            int pre = (prefix==null) ? 0 : prefix.length;
+            int suf = (suffix==null) ? 0 : suffix.length;
+            // the permutation with the prefix and suffix attached
+            int[] word = new int[pre+perm.length+suf];
+            if (prefix!=null) System.arraycopy(prefix,0,word,0,pre);
+            if (suffix!=null) System.arraycopy(suffix,0,word,pre+perm.length,suf);
+            System.arraycopy(perm,0,word,pre,perm.length);
+            // the decoded word; its length is the same for every permutation
+            int[] current = (rule==null) ? word : new int[substitutedLength(word,rule)];
+            int found = 0;
+            for (long i = 0; i < max; i++) {
+                if (stopRequested()) return new BoundaryResult(found,i,false);
+                if (i > 0) m.next();
+                System.arraycopy(perm,0,word,pre,perm.length);
+                if (rule!=null) substitute(word,rule,current);
                 boolean valid = true;
                 for (int j = Point.N()-1; j > 0; j = j-2) {
-                    RhombBoundary RB = (sym) ? createSymmetricRhombBoundary(j,current) : createRhombBoundary(j,current);
-                    if (!RB.valid()) {
+                    if (!isTileable(j,current,sym)) {
                         valid = false;
                         break;
                     }
                 }
                 if (valid) //return current;
                 {
-                    output.add(current);
+                    sink.accept(current.clone());
+                    found++;
                 }
-                m.iterate();
             }
-            return new BoundaryResult(output);
+            return new BoundaryResult(found,max,true);
         }
     } // end of class BoundaryWorkUnit
 
     /**
      * A basic class returned by a {@link BoundaryWorkUnit}.  
-     * It doesn't contain much--most of the real information is 
-     * output to the terminal in {@link BoundaryWorkUnit.call()}.  
+     * It doesn't contain much--the real information is 
+     * sent to a {@link ResultSink} in {@link BoundaryWorkUnit.call()}.  
      */
     private static class BoundaryResult implements Result
     {
-        /** The main field.  */
-        private List<int[]> valids;
+        /** The number of valid sequences sent to the sink.  */
+        private final int found;
+        /** The number of permutations searched.  */
+        private final long searched;
+        /** Did we search the whole range?  */
+        private final boolean complete;
+
+        /**
+         * Public constructor.  
+         * @param found The number of valid sequences sent to the sink.  
+         * @param searched The number of permutations searched.  
+         * @param complete false if we stopped before the end of the range.  
+         */
+        public BoundaryResult(int found, long searched, boolean complete)
+        {
+            this.found = found;
+            this.searched = searched;
+            this.complete = complete;
+        }
+
+        /** Getter method.  */
+        public int getFound()
+        {
+            return found;
+        }
 
-        /** Public constructor.  */
-        public BoundaryResult(List<int[]> v)
+        /**
+         * The number of permutations searched.  If we stopped early, 
+         * these are the first ones in the range.  
+         */
+        public long getProcessed()
         {
-            this.valids = v;
+            return searched;
         }
 
         /** Getter method.  */
-        public List<int[]> getValids()
+        public boolean isComplete()
         {
-            return valids;
+            return complete;
         }
 
     } // end of class BoundaryResult 
 
+    /**
+     * A task that searches a range of permutations by splitting it in 
+     * half until the pieces contain no more than {@link #WORK_UNIT_LENGTH} 
+     * permutations, and then calling a {@link BoundaryWorkUnit} on each piece.  
+     * Each piece finds its own starting permutation using 
+     * {@link MultiSetPermutation#unrank(long)}, and idle threads in the 
+     * ForkJoinPool steal the halves that haven't been split yet, so 
+     * there is no producer thread stepping through the permutations.  
+     * If there is a {@link SearchCheckpoint}, we skip the ranges that it 
+     * says have been searched, and record each piece in it when we finish it.  
+     * The result is the number of valid permutations found.  
+     */
+    private static class BoundarySearchTask extends RecursiveTask<Long>
+    {
+        /** For serialization.  */
+        public static final long serialVersionUID = 5515L;
+        /** The WorkUnit that searches the whole range.  */
+        private final BoundaryWorkUnit unit;
+        /** The search that this is part of.  */
+        private final BoundarySearch search;
+        /** A record of the ranges searched so far, or null.  */
+        private final SearchCheckpoint checkpoint;
+
+        /**
+         * Public constructor.  
+         * @param unit A WorkUnit that searches the whole range.  
+         * @param search The search that this is part of, to which we 
+         * report the number of permutations that we have searched.  
+         * @param checkpoint A record of the ranges searched so far, or null 
+         * if we aren't keeping one.  
+         */
+        public BoundarySearchTask(BoundaryWorkUnit unit, BoundarySearch search, SearchCheckpoint checkpoint) {
+            this.unit = unit;
+            this.search = search;
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * Search the range, or split it in half and search the halves.  
+         * If the search is cancelled, we stop, leaving the rest of the 
+         * range out of the checkpoint.  
+         * @return The number of valid permutations found in the range.  
+         */
+        protected Long compute() {
+            long start = unit.getStart();
+            long max = unit.getMax();
+            if (search.isCancelled()) return 0L;
+            if (checkpoint != null && checkpoint.isDone(start,start+max)) return 0L;
+            if (max <= WORK_UNIT_LENGTH) {
+                if (checkpoint == null) {
+                    BoundaryResult result = unit.call();
+                    search.record(result.getProcessed(),result.getFound());
+                    return (long) result.getFound();
+                }
+                long found = 0;
+                for (long[] range : checkpoint.notDone(start,start+max)) {
+                    final List<int[]> valids = new ArrayList<>();
+                    final ResultSink sink = unit.getSink();
+                    ResultSink record = new ResultSink() {
+                        public void accept(int[] sequence) {
+                            valids.add(sequence);
+                            sink.accept(sequence);
+                        }
+                        public void done() { } };
+                    BoundaryResult result = unit.range(range[0],range[1]-range[0],record).call();
+                    found += result.getFound();
+                    checkpoint.complete(range[0],range[0]+result.getProcessed(),valids);
+                    search.record(result.getProcessed(),result.getFound());
+                    if (!result.isComplete()) break;
+                }
+                checkpoint.saveIfDue();
+                return found;
+            }
+            long half = max/2;
+            BoundarySearchTask first = new BoundarySearchTask(unit.range(start,half),search,checkpoint);
+            BoundarySearchTask second = new BoundarySearchTask(unit.range(start+half,max-half),search,checkpoint);
+            first.fork();
+            long found = second.compute();
+            return found + first.join();
+        }
+    } // end of class BoundarySearchTask
+
+    /**
+     * The symmetries of the set of edge sequences searched by a 
+     * {@link BoundaryWorkUnit}.  
+     * Reversing an edge sequence, changing the signs of its angles, or 
+     * doing both, takes a valid non-symmetric edge sequence to another 
+     * valid one.  If one of these operations on the decoded sequences 
+     * comes from an operation on permutations of the multiset (reversing 
+     * the permutation and replacing each symbol with another), then we 
+     * only need to test one permutation from each orbit: the smallest 
+     * one in lexicographic order.  
+     * This class stores the group of permutation operations that we 
+     * found, and tests permutations for being the smallest in their orbits.  
+     */
+    private static class EdgeSymmetry implements Serializable
+    {
+        /** For serialization.  */
+        public static final long serialVersionUID = 5516L;
+        /** The symbols that can appear, in increasing order.  */
+        private final int[] alphabet;
+        /** Do the non-identity operations reverse the permutation?  */
+        private final boolean[] reverses;
+        /** 
+         * How the non-identity operations replace symbols.  
+         * maps[g][k] is the index in alphabet of the image of alphabet[k].  
+         */
+        private final int[][] maps;
+        /** Scratch space for images of permutations.  */
+        private transient int[] image;
+
+        // private constructor
+        private EdgeSymmetry(int[] alphabet, List<Boolean> reverses, List<int[]> maps) {
+            this.alphabet = alphabet;
+            this.reverses = new boolean[reverses.size()];
+            this.maps = new int[maps.size()][];
+            for (int g = 0; g < this.maps.length; g++) {
+                this.reverses[g] = reverses.get(g);
+                this.maps[g] = maps.get(g);
+            }
+        }
+
+        /**
+         * Public static factory method.  
+         * Find the operations on permutations of multiset that 
+         * reverse, negate, or reverse and negate the decoded edge sequences.  
+         * @param multiset The multiset of symbols that we permute.  
+         * @param pre The symbols that come before the permutation, or null.  
+         * @param suf The symbols that come after the permutation, or null.  
+         * @param rule The number substitution rule used to decode symbols, or null.  
+         * @return The group generated by these operations, or null if 
+         * there aren't any apart from the identity.  
+         */
+        public static EdgeSymmetry createEdgeSymmetry(int[] multiset, int[] pre, int[] suf, int[][] rule) {
+            if (pre==null) pre = new int[0];
+            if (suf==null) suf = new int[0];
+            int[] all = new int[multiset.length+pre.length+suf.length];
+            System.arraycopy(multiset,0,all,0,multiset.length);
+            System.arraycopy(pre,0,all,multiset.length,pre.length);
+            System.arraycopy(suf,0,all,multiset.length+pre.length,suf.length);
+            Arrays.sort(all);
+            int distinct = 0;
+            for (int j = 0; j < all.length; j++) if (j==0||all[j]!=all[j-1]) all[distinct++] = all[j];
+            int[] alphabet = Arrays.copyOf(all,distinct);
+
+            // find the operations on symbols that do what we want 
+            List<Boolean> reverses = new ArrayList<>();
+            List<int[]> maps = new ArrayList<>();
+            reverses.add(false);
+            maps.add(identity(alphabet.length));
+            for (int t = 1; t < 4; t++) {
+                boolean reverse = (t&1)==1;
+                boolean negate = (t&2)==2;
+                int[] map = symbolMap(alphabet,rule,reverse,negate);
+                if (map==null) continue;
+                int[] sorted = apply(alphabet,map,multiset);
+                Arrays.sort(sorted);
+                int[] original = multiset.clone();
+                Arrays.sort(original);
+                if (!Arrays.equals(sorted,original)) continue;
+                if (reverse) {
+                    if (!Arrays.equals(apply(alphabet,map,reverse(pre)),suf)) continue;
+                    if (!Arrays.equals(apply(alphabet,map,reverse(suf)),pre)) continue;
+                } else {
+                    if (!Arrays.equals(apply(alphabet,map,pre),pre)) continue;
+                    if (!Arrays.equals(apply(alphabet,map,suf),suf)) continue;
+                }
+                reverses.add(reverse);
+                maps.add(map);
+            }
+
+            // close up under composition
+            for (int g = 0; g < maps.size(); g++) {
+                for (int h = 1; h < maps.size(); h++) {
+                    int[] map = new int[alphabet.length];
+                    for (int k = 0; k < map.length; k++) map[k] = maps.get(g)[maps.get(h)[k]];
+                    boolean reverse = reverses.get(g)^reverses.get(h);
+                    boolean found = false;
+                    for (int f = 0; f < maps.size(); f++) {
+                        if (reverses.get(f)==reverse&&Arrays.equals(maps.get(f),map)) found = true;
+                    }
+                    if (!found) {
+                        reverses.add(reverse);
+                        maps.add(map);
+                    }
+                }
+            }
+            if (maps.size()==1) return null;
+            reverses.remove(0);
+            maps.remove(0);
+            return new EdgeSymmetry(alphabet,reverses,maps);
+        }
+
+        // the identity map on n symbols
+        private static int[] identity(int n) {
+            int[] output = new int[n];
+            for (int k = 0; k < n; k++) output[k] = k;
+            return output;
+        }
+
+        // the sequence that the symbol x stands for
+        private static int[] decode(int x, int[][] rule) {
+            return (rule!=null&&Math.abs(x)<rule.length) ? rule[Math.abs(x)] : new int[] {x};
+        }
+
+        /**
+         * Find a map from the alphabet to itself that reverses and/or 
+         * negates the decoded sequence of each symbol.  
+         * We prefer to send a symbol to itself, then to its negative.  
+         * @return The map, as an array of indices, or null if there isn't one.  
+         */
+        private static int[] symbolMap(int[] alphabet, int[][] rule, boolean reverse, boolean negate) {
+            int[] output = new int[alphabet.length];
+            for (int k = 0; k < alphabet.length; k++) {
+                int[] target = decode(alphabet[k],rule).clone();
+                if (negate) for (int j = 0; j < target.length; j++) target[j] = -target[j];
+                if (reverse) target = RhombBoundary.reverse(target);
+                int best = -1;
+                for (int j = 0; j < alphabet.length; j++) {
+                    if (!Arrays.equals(decode(alphabet[j],rule),target)) continue;
+                    if (best<0||alphabet[j]==alphabet[k]||(alphabet[j]==-alphabet[k]&&alphabet[best]!=alphabet[k])) best = j;
+                }
+                if (best<0) return null;
+                output[k] = best;
+            }
+            return output;
+        }
+
+        // replace each symbol in input by its image under map
+        private static int[] apply(int[] alphabet, int[] map, int[] input) {
+            int[] output = new int[input.length];
+            for (int j = 0; j < input.length; j++) output[j] = alphabet[map[Arrays.binarySearch(alphabet,input[j])]];
+            return output;
+        }
+
+        /** The number of non-identity operations.  */
+        public int size() {
+            return maps.length;
+        }
+
+        /**
+         * The symbol at index j of the image of p under operation g.  
+         */
+        private int imageAt(int g, int[] p, int j) {
+            int x = p[reverses[g] ? p.length-1-j : j];
+            return alphabet[maps[g][Arrays.binarySearch(alphabet,x)]];
+        }
+
+        /**
+         * Is p no bigger than any of its images, in lexicographic order?  
+         * @param p A permutation of the multiset.  
+         * @return true if p is the representative of its orbit that we test.  
+         */
+        public boolean isCanonical(int[] p) {
+            for (int g = 0; g < maps.length; g++) {
+                for (int j = 0; j < p.length; j++) {
+                    int x = imageAt(g,p,j);
+                    if (p[j] < x) break;
+                    if (p[j] > x) return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Is it possible that a permutation beginning with the first 
+         * depth entries of p is no bigger than any of its images?  
+         * We can only tell this from the beginning of p for operations 
+         * that don't reverse the permutation.  
+         * @param p A permutation of the multiset.  
+         * @param depth The length of the beginning of p that we know.  
+         * @return false if every permutation beginning like p 
+         * has a smaller image.  
+         */
+        public boolean prefixCanonical(int[] p, int depth) {
+            for (int g = 0; g < maps.length; g++) {
+                if (reverses[g]) continue;
+                for (int j = 0; j < depth; j++) {
+                    int x = imageAt(g,p,j);
+                    if (p[j] < x) break;
+                    if (p[j] > x) return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * The image of p under operation g.  
+         * This array is reused, so don't keep it.  
+         * @param g Which non-identity operation to apply.  
+         * @param p A permutation of the multiset.  
+         * @return The image of p.  
+         */
+        public int[] image(int g, int[] p) {
+            if (image==null||image.length!=p.length) image = new int[p.length];
+            for (int j = 0; j < p.length; j++) image[j] = imageAt(g,p,j);
+            return image;
+        }
+    } // end of class EdgeSymmetry
+
     /**
      * Check if each {@link Terminus} has a match.  
      * This is chiefly for use in the constructor.  
@@ -379,6 +1055,7 @@ public class RhombBoundary implements Serializable {
                     } // end of t.getAngle()==end
             }
         }
+        YarnArrangement.createYarnArrangement(yarns);
 
         // if we are filling the rhomb symmetrically
         if (sym) {
@@ -388,64 +1065,38 @@ public class RhombBoundary implements Serializable {
         }
     } // end of placeYarns
 
+    /**
+     * Record the crossings of the Yarns.  
+     * @return An array whose ith entry lists the indices of the Yarns 
+     * that cross the ith Yarn, in order.  
+     */
+    private int[][] threading() {
+        int[][] output = new int[yarns.length][];
+        for (int i = 0; i < yarns.length; i++) {
+            List<Yarn> c = yarns[i].cross();
+            output[i] = new int[c.size()];
+            for (int j = 0; j < output[i].length; j++) output[i][j] = c.get(j).getId();
+        }
+        return output;
+    }
+
+    /**
+     * Once we've placed the Yarns, add the crossings recorded by 
+     * {@link #threading()} for another RhombBoundary with the same Termini.  
+     * @param threading The indices of the Yarns that cross each Yarn, in order.  
+     */
+    private void threadYarns(int[][] threading) {
+        for (int i = 0; i < yarns.length; i++) {
+            for (int j : threading[i]) yarns[i].addLast(yarns[j]);
+        }
+    }
+
     /**
      * Once we've placed the Yarns, add their crossings.  
      * Use the Kannan-Kenyon-Soroker algorithm.  
      */
     private void threadYarnsKKS() {
-        // make an array in which each yarn appears twice
-        // once at its start index and once at its end index
-        Yarn[] yarnIndex = new Yarn[l];
-        for (Yarn y : yarns) {
-            yarnIndex[y.getStartIndex()] = y;
-            yarnIndex[y.getEndIndex()] = y;
-        }
-        // a list of Yarns we've done already
-        List<Yarn> discards = new LinkedList<>();
-        // now iterate through the array repeatedly
-        boolean done = false;
-        while (!done) {
-            done = true;
-            for (int i = 0; i < yarnIndex.length; i++) {
-                Yarn y = yarnIndex[i];
-                if (!discards.contains(y)) {
-                    done = false;
-                    int otherEnd = (y.getStartIndex()!=i) ? y.getStartIndex() : y.getEndIndex();
-                    // now check to see if there are any full
-                    // Yarns between the start and end of this one
-                    // that do not cross it
-                    boolean simpleYarn = true;
-                    for (int j = i+1; j < otherEnd; j++) {
-                         if (!discards.contains(yarnIndex[j])) {
-                             if (!y.shouldCross(yarnIndex[j])) {
-                                 simpleYarn = false;
-                                 break;
-                             }
-                         }
-                    } // end of check for simpleYarn
-                    if (simpleYarn) {
-                        boolean forward = y.getStartIndex()==i;
-                        for (int j = i+1; j < otherEnd; j++) {
-                            Yarn other = yarnIndex[j];
-                            if (!discards.contains(other)) {
-                                if (forward) {
-                                    y.addLast(other);
-                                } else {
-                                    y.addFirst(other);
-                                }
-                                if (j==other.getStartIndex()) {
-                                    other.addLast(y);
-                                } else {
-                                    other.addFirst(y);
-                                }
-                            }
-                        }
-                        discards.add(y);
-                        break;
-                    } // end of if(simpleYarn)
-                } // end of if (!discards.contains(y))
-            } // end of iteration through yarnIndex
-        } // end of while(!done)
+        sweepYarns(l);
     } // end of threadYarnsKKS
 
     /**
@@ -453,76 +1104,132 @@ public class RhombBoundary implements Serializable {
      * Use the Kannan-Kenyon-Soroker algorithm, but symmetrize it.  
      */
     private void symmetricThreadYarnsKKS() {
+        Yarn[] yarnIndex = sweepYarns(l/2);
+        // symmetrize each Yarn once
+        boolean[] done = new boolean[l];
+        for (int i = 0; i < l; i++) {
+            if (!done[i]) {
+                yarnIndex[i].symmetrize();
+                done[yarnIndex[i].getStartIndex()] = true;
+                done[yarnIndex[i].getEndIndex()] = true;
+            }
+        }
+    } // end of symmetricThreadYarnsKKS
+
+    /**
+     * The Kannan-Kenyon-Soroker algorithm, looking only at the Termini 
+     * with indices less than bound.  
+     * Over and over, we find the first index i (less than bound) at 
+     * which there is a Yarn y that we haven't done yet, such that every 
+     * Yarn that we haven't done yet, and that has an end between i and 
+     * the other end of y (or bound, if that comes first), crosses y.  
+     * Then y crosses each of those Yarns, in order, and we're done with y.  
+     * If i is the second end of y, nothing lies between them, so we're 
+     * done with y straight away.  
+     * Rather than scanning for i from the beginning each time, we keep 
+     * count, for each index, of the Yarns that get in the way, and 
+     * update the counts when we're done with a Yarn, so each Yarn 
+     * costs time proportional to the number of Termini.  
+     * @param bound We only look at Termini with indices less than this.  
+     * @return An array whose ith entry is the Yarn with an end at index i.  
+     */
+    private Yarn[] sweepYarns(int bound) {
         // make an array in which each yarn appears twice
         // once at its start index and once at its end index
         Yarn[] yarnIndex = new Yarn[l];
+        int[] other = new int[l];
         for (Yarn y : yarns) {
             yarnIndex[y.getStartIndex()] = y;
             yarnIndex[y.getEndIndex()] = y;
+            other[y.getStartIndex()] = y.getEndIndex();
+            other[y.getEndIndex()] = y.getStartIndex();
         }
-        // a list of Yarns we've done already
-        List<Yarn> discards = new LinkedList<>();
-        // now iterate through the array repeatedly
-        boolean done = false;
-        while (!done) {
-            done = true;
-            for (int i = 0; i < l/2; i++) {
-                Yarn y = yarnIndex[i];
-                if (!discards.contains(y)) {
-                    done = false;
-                    int otherEnd = (y.getStartIndex()!=i) ? y.getStartIndex() : y.getEndIndex();
-                    int bound = (otherEnd>l/2) ? l/2 : otherEnd;
-                    // now check to see if there are any full
-                    // Yarns between the start and end of this one
-                    // that do not cross it
-                    boolean simpleYarn = true;
-                    for (int j = i+1; j < bound; j++) {
-                         if (!discards.contains(yarnIndex[j])) {
-                             if (!y.shouldCross(yarnIndex[j])) {
-                                 simpleYarn = false;
-                                 break;
-                             }
-                         }
-                    } // end of check for simpleYarn
-                    if (simpleYarn) {
-                        boolean forward = y.getStartIndex()==i;
-                        for (int j = i+1; j < bound; j++) {
-                            Yarn other = yarnIndex[j];
-                            if (!discards.contains(other)) {
-                                if (forward) {
-                                    y.addLast(other);
-                                } else {
-                                    y.addFirst(other);
-                                }
-                                if (j==other.getStartIndex()) {
-                                    other.addLast(y);
-                                } else {
-                                    other.addFirst(y);
-                                }
-                            }
-                        }
-                        discards.add(y);
-                        break;
-                    } // end of if(simpleYarn)
-                } // end of if (!discards.contains(y))
-            } // end of iteration through yarnIndex
-        } // end of while(!done)
-        discards.clear();
-        for (Yarn y : yarnIndex) {
-            if (!discards.contains(y)) {
-                y.symmetrize();
-                discards.add(y);
+        // the Termini between i and hi[i] are the ones that must cross the Yarn at i
+        int[] hi = new int[bound];
+        // the number of Yarns we haven't done yet between i and hi[i] that don't cross the Yarn at i
+        int[] blocked = new int[bound];
+        // the indices i at which there is a Yarn we can do now
+        BitSet ready = new BitSet(bound);
+        for (int i = 0; i < bound; i++) {
+            hi[i] = (other[i] > i) ? Math.min(other[i],bound) : i+1;
+            for (int j = i+1; j < hi[i]; j++) {
+                if (!interleaved(i,j,other)) blocked[i]++;
             }
+            if (blocked[i]==0) ready.set(i);
         }
-    } // end of symmetricThreadYarnsKKS
+        // the ends of the Yarns we've done already
+        boolean[] discarded = new boolean[l];
+        for (int i = ready.nextSetBit(0); i >= 0; i = ready.nextSetBit(0)) {
+            Yarn y = yarnIndex[i];
+            boolean forward = y.getStartIndex()==i;
+            for (int j = i+1; j < hi[i]; j++) {
+                if (discarded[j]) continue;
+                Yarn z = yarnIndex[j];
+                if (forward) {
+                    y.addLast(z);
+                } else {
+                    y.addFirst(z);
+                }
+                if (j==z.getStartIndex()) {
+                    z.addLast(y);
+                } else {
+                    z.addFirst(y);
+                }
+            }
+            // now we're done with y
+            discarded[i] = true;
+            discarded[other[i]] = true;
+            ready.clear(i);
+            if (other[i] < bound) ready.clear(other[i]);
+            unblock(i,bound,other,hi,blocked,discarded,ready);
+            unblock(other[i],bound,other,hi,blocked,discarded,ready);
+        }
+        return yarnIndex;
+    } // end of sweepYarns
+
+    /**
+     * Update the counts in {@link #sweepYarns(int)} when we've discarded
+     * the end of a Yarn at index p.  Each Yarn that it was getting in 
+     * the way of is blocked by one fewer, and is ready if that makes none.  
+     * @param p The index of the end that we've discarded.  
+     * @param bound We only look at Termini with indices less than this.  
+     * @param other The index of the other end of the Yarn at each index.  
+     * @param hi The Termini between i and hi[i] must cross the Yarn at i.  
+     * @param blocked The number of Yarns blocking the Yarn at each index.  
+     * @param discarded The ends of the Yarns we've done already.  
+     * @param ready The indices at which there is a Yarn we can do now.  
+     */
+    private static void unblock(int p, int bound, int[] other, int[] hi, int[] blocked, boolean[] discarded, BitSet ready) {
+        for (int k = 0; k < p && k < bound; k++) {
+            if (!discarded[k] && hi[k] > p && !interleaved(k,p,other)) {
+                if (--blocked[k]==0) ready.set(k);
+            }
+        }
+    }
+
+    /**
+     * Do the Yarns with ends at indices i and j cross?  
+     * This is the same as {@link Yarn#shouldCross(Yarn)}.  
+     * @param other The index of the other end of the Yarn at each index.  
+     * @return true if exactly one end of the Yarn at j lies between 
+     * the ends of the Yarn at i.  
+     */
+    private static boolean interleaved(int i, int j, int[] other) {
+        int a = Math.min(i,other[i]);
+        int b = Math.max(i,other[i]);
+        boolean first = a < j && j < b;
+        boolean second = a < other[j] && other[j] < b;
+        return first != second;
+    }
 
     /**
      * Set the Joins of all the Yarns.  
      */
     public void setJoins() {
         List<Yarn> discards = new LinkedList<>();
+        updateBases();
         for (Yarn y : yarns) {
-            Point base = base(y.getStartIndex());
+            Point base = bases[y.getStartIndex()];
             for (Yarn z : y.cross()) {
                 Point shift = Point.createPoint(z.getStartAngle());
                 Point corner = (y.ccwStart(z)) ? base.plus(shift) : base;
@@ -534,7 +1241,7 @@ public class RhombBoundary implements Serializable {
                     allJoins.add(newJoin);
                 }
                 if (y.ccwStart(z)) {
-                    base = base.plus(shift);
+                    base = corner;
                 } else {
                     base = base.minus(shift);
                 }
@@ -558,7 +1265,7 @@ public class RhombBoundary implements Serializable {
      */
     private void setTriples() {
         List<Yarn> discards = new LinkedList<>();
-        triples = new LinkedList<>();
+        triples = HexList.createHexList();
         Yarn y1 = null;
         Yarn y2 = null;
         for (Yarn y : yarns) {
@@ -609,12 +1316,13 @@ public class RhombBoundary implements Serializable {
     public void collapse(Rhomb j) {
         if (!allJoins.contains(j)) return;
         if (j.onEdge()) {
-            Hex removeMe = null;
-            for (Hex t : triples) if (t.contains(j)) removeMe = t;
+            Hex removeMe = ((HexList) triples).lastContaining(j);
             if (removeMe!=null) triples.remove(removeMe);
             j.collapse();
             allJoins.remove(j);
             setEdgeJoins();
+            // collapsing swaps the angles of two Termini
+            if (bases!=null) updateBases();
         }
     } // end of flipTriple
 
@@ -715,15 +1423,29 @@ public class RhombBoundary implements Serializable {
      * the rhomb that has angles even*pi/N and (N-even)*pi/N.  
      */
     public static RhombBoundary createRhombBoundary(int even, int[] angles1, int[] angles2, boolean sym) {
-        int l1 = angles1.length;
-        int l2 = angles2.length;
-        if (even<1||even>Point.N()-1) throw new IllegalArgumentException(even + " is not between 0 and " + (Point.N()-1) + ".");
 //        for (int j = 0; j < l1; j++) {
 //            if (Math.abs(angles1[j]) > Point.N()/2) throw new IllegalArgumentException("Please input a list of angles between " + (-Point.N()/2) + " and " + (Point.N()/2) + ".");
 //        }
 //        for (int j = 0; j < l2; j++) {
 //            if (Math.abs(angles2[j]) > Point.N()/2) throw new IllegalArgumentException("Please input a list of angles between " + (-Point.N()/2) + " and " + (Point.N()/2) + ".");
 //        }
+        return new RhombBoundary(boundaryAngles(even,angles1,angles2,sym),sym);
+    }
+
+    /**
+     * The angles of the {@link Terminus}es of the RhombBoundary made by 
+     * {@link #createRhombBoundary(int,int[],int[],boolean)}, in 
+     * counterclockwise order.  
+     * @param even One of the angles of the big rhomb.  
+     * @param angles1 The sequence for the top and left edges.  
+     * @param angles2 The sequence for the bottom and right edges.  
+     * @param sym Tells us whether or not to symmetrize.  
+     * @return The angles of the Termini, as integer multiples of pi/N.  
+     */
+    private static int[] boundaryAngles(int even, int[] angles1, int[] angles2, boolean sym) {
+        int l1 = angles1.length;
+        int l2 = angles2.length;
+        if (even<1||even>Point.N()-1) throw new IllegalArgumentException(even + " is not between 0 and " + (Point.N()-1) + ".");
         int[] b1 = new int[angles1.length];
         int[] b2 = new int[angles2.length];
         if (sym) for (int i = 0; i < b1.length; i++) b1[i] = -angles1[i];
@@ -740,7 +1462,85 @@ public class RhombBoundary implements Serializable {
             a[l1+j] = (angles2[j]>0) ? angles2[j] : 2*Point.N()+angles2[j];
             a[l1+2*l2-1-j] = (Point.N()-even+b2[j]>0) ? Point.N()-even+b2[j] : 3*Point.N()-even+b2[j];
         }
-        return new RhombBoundary(a,sym);
+        return a;
+    }
+
+    /**
+     * Determine whether or not an edge sequence gives a valid 
+     * RhombBoundary, without building it.  
+     * This gives the same answer as calling {@link #valid()} on 
+     * {@link #createRhombBoundary(int,int[])} (or 
+     * {@link #createSymmetricRhombBoundary(int,int[])} if sym is true), 
+     * but it only uses a few arrays of ints, so it's much cheaper.  
+     * We pair off the Termini in the same way as {@link #placeYarns(boolean)}.  
+     * Two Yarns cross if exactly one end of one of them lies between 
+     * the ends of the other, and then we check the angles of their first 
+     * ends as in {@link Yarn#valid()}.  
+     * @param even One of the angles of the big rhomb, 
+     * expressed as an integer multiple of pi/{@link Point#N()}.  
+     * @param angles A sequence of angle differences that determines the
+     * shape of the four edges of the rhomb.  
+     * @param sym Tells us whether or not to symmetrize.  
+     * @return true if the RhombBoundary with this edge sequence is valid.  
+     * @throws IllegalArgumentException If the ends don't match, just as 
+     * when we build the RhombBoundary.  
+     */
+    public static boolean isTileable(int even, int[] angles, boolean sym) {
+        int[] angles2 = angles;
+        if (sym) {
+            angles2 = new int[angles.length];
+            for (int i = 0; i < angles.length; i++) angles2[i] = -angles[i];
+        }
+        int[] a = boundaryAngles(even,angles,angles2,sym);
+        int ll = a.length;
+        int twoN = 2*Point.N();
+        for (int i = 0; i < ll; i++) {
+            a[i] = a[i] % twoN;
+            if (a[i] <= 0) a[i] += twoN;
+        }
+        // pair off the Termini, one angle class at a time
+        int[] other = new int[ll];
+        int[] starts = new int[ll];
+        int[] ends = new int[ll];
+        for (int i = 1; i <= Point.N(); i++) {
+            int start = (i%2==1) ? i : i+Point.N();
+            int end = (i%2==1) ? i+Point.N() : i;
+            int s = 0;
+            int e = 0;
+            for (int t = 0; t < ll; t++) {
+                if (a[t]==start) {
+                    if (e==0) {
+                        starts[s++] = t;
+                    } else {
+                        int pop = ends[--e];
+                        other[t] = pop;
+                        other[pop] = t;
+                    }
+                }
+                if (a[t]==end) {
+                    if (s==0) {
+                        ends[e++] = t;
+                    } else {
+                        int pop = starts[--s];
+                        other[t] = pop;
+                        other[pop] = t;
+                    }
+                }
+            }
+            if (s!=0||e!=0) throw new IllegalArgumentException("The ends don't match.");
+        }
+        // the Yarns with ends i < j < other[i] < other[j] cross
+        for (int i = 0; i < ll; i++) {
+            if (other[i] < i) continue;
+            for (int j = i+1; j < other[i]; j++) {
+                if (other[j] > other[i]) {
+                    int difference = a[j]-a[i];
+                    int pos = (difference<=0) ? difference + twoN : difference;
+                    if (pos>=Point.N()) return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -853,22 +1653,29 @@ public class RhombBoundary implements Serializable {
     public RhombBoundary simplify() {
         List<Rhomb> newJoins = new ArrayList<>(allJoins.size());
         List<Hex> newTriples = new ArrayList<>(triples.size());
-        for (int i = 0; i < allJoins.size(); i++) newJoins.add(allJoins.get(i).createSimpleRhomb());
+        // the simplified version of each Join, found by identity
+        Map<Rhomb,SimpleRhomb> simple = new IdentityHashMap<>(2*allJoins.size());
+        for (Rhomb j : allJoins) {
+            SimpleRhomb s = j.createSimpleRhomb();
+            simple.put(j,s);
+            newJoins.add(s);
+        }
         for (Yarn y : yarns) {
-            Join current = null;
-            Join previous = null;
+            SimpleRhomb current = null;
+            SimpleRhomb previous = null;
             int a = y.getEndAngle();
             for (Join jj : y.joins()) {
-                current = jj;
+                current = simple.get(jj);
                 // add previous to the adjacency list of current
-                ((SimpleRhomb)newJoins.get(allJoins.indexOf(current))).addAdjacent((previous==null) ? null : ((SimpleRhomb)newJoins.get(allJoins.indexOf(previous))),a,true);
+                current.addAdjacent(previous,a,true);
                 // add current to the adjacency list of previous 
-                if (previous!=null) ((SimpleRhomb)newJoins.get(allJoins.indexOf(previous))).addAdjacent(((SimpleRhomb)newJoins.get(allJoins.indexOf(current))),a,false);
+                if (previous!=null) previous.addAdjacent(current,a,false);
                 previous = current;
             }
-            ((SimpleRhomb)newJoins.get(allJoins.indexOf(previous))).addAdjacent(null,a,false);
+            // a Yarn that crosses no other Yarns has no Joins
+            if (previous!=null) previous.addAdjacent(null,a,false);
         }
-        for (int i = 0; i < triples.size(); i++) newTriples.add(triples.get(i).createSimpleHex(allJoins,newJoins));
+        for (Hex t : triples) newTriples.add(t.createSimpleHex(simple));
         return new RhombBoundary(l,n,new Terminus[0],new Yarn[0],newJoins,newJoins,newTriples,valid);
     }
 
@@ -901,25 +1708,87 @@ public class RhombBoundary implements Serializable {
     } // end of toString
 
     /**
-     * Currently broken.  Any two RhombBoundaries are equal.  
+     * Two RhombBoundaries are equal if they have the same {@link Point#N()}, 
+     * the same {@link Terminus} angles, and the same tiling: that is, 
+     * each Yarn crosses the same Yarns in the same order.  
+     * Simplified RhombBoundaries (see {@link #simplify()}) have no Yarns, 
+     * so they are equal if they contain the same rhombs.  
      */
     public boolean equals(Object obj) {
         if (obj == null || getClass() != obj.getClass())
             return false;
-        RhombBoundary l = (RhombBoundary) obj;
+        RhombBoundary r = (RhombBoundary) obj;
+        if (n!=r.n||l!=r.l||valid!=r.valid) return false;
+        if (termini.length!=r.termini.length||yarns.length!=r.yarns.length) return false;
+        for (int i = 0; i < termini.length; i++) {
+            if (termini[i].getAngle()!=r.termini[i].getAngle()) return false;
+        }
+        if (yarns.length==0) return new HashSet<Rhomb>(allJoins).equals(new HashSet<Rhomb>(r.allJoins));
+        for (int i = 0; i < yarns.length; i++) {
+            List<Yarn> c1 = yarns[i].cross();
+            List<Yarn> c2 = r.yarns[i].cross();
+            if (c1.size()!=c2.size()) return false;
+            for (int j = 0; j < c1.size(); j++) {
+                if (c1.get(j).getId()!=c2.get(j).getId()) return false;
+            }
+        }
         return true;
     }
 
     /**
-     * Currently broken.  
-     * @return 19.  
+     * Hash code based on {@link Point#N()} and the {@link Terminus} angles.  
+     * Flipping Triples doesn't change it, but collapsing rhombs does, so 
+     * don't collapse a RhombBoundary while it is in a HashSet.  
+     * @return A hash code consistent with {@link #equals(Object)}.  
      */
     public int hashCode() {
         int prime = 59;
         int result = 19;
+        result = prime*result + n;
+        result = prime*result + l;
+        for (Terminus t : termini) result = prime*result + t.getAngle();
         return result;
     }
 
+    /**
+     * The key under which we remember the threading of a RhombBoundary: 
+     * the value of {@link Point#N()}, the angles of the Termini, and 
+     * whether or not it is symmetric.  
+     */
+    private static class ThreadingKey {
+
+        /** The value of {@link Point#N()}.  */
+        private final int n;
+        /** The angles of the Termini.  */
+        private final int[] angles;
+        /** Is the RhombBoundary symmetric?  */
+        private final boolean sym;
+
+        // private constructor
+        private ThreadingKey(int[] angles, boolean sym) {
+            this.n = Point.N();
+            this.angles = angles.clone();
+            this.sym = sym;
+        }
+
+        public boolean equals(Object obj) {
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            ThreadingKey k = (ThreadingKey) obj;
+            return n==k.n&&sym==k.sym&&Arrays.equals(angles,k.angles);
+        }
+
+        public int hashCode() {
+            int prime = 59;
+            int result = 19;
+            result = prime*result + n;
+            result = prime*result + (sym ? 1 : 0);
+            result = prime*result + Arrays.hashCode(angles);
+            return result;
+        }
+
+    } // end of class ThreadingKey
+
     /**
      * Find the base of the rhomb at the boundary subedge with this index.  
      * We have a set of prototile rhombs that all have a vertex at the origin.  
@@ -936,9 +1805,37 @@ public class RhombBoundary implements Serializable {
      */
     public Point base(int i) {
         if (i<0||i>l) throw new IllegalArgumentException("Trying to find a basepoint at index " + i + ", which is not between 0 and " + l + ".");
-        Point output = Point.ZERO();
-        for (int j = 0; j <= i; j++) output = output.plus(Point.createPoint(termini[j].getAngle()));
-        return output;
+        updateBases();
+        return bases[i];
+    }
+
+    /**
+     * Bring the table of base points up to date.  
+     * The first time, we add up all of the Termini.  After that, we 
+     * look for the Termini whose angles have changed, and recompute the 
+     * base points from the first of them until they agree with the old 
+     * ones again, after the last of them.  
+     */
+    private void updateBases() {
+        int first = 0;
+        int last = l-1;
+        if (bases==null) {
+            bases = new Point[l];
+            baseAngles = new int[l];
+        } else {
+            while (first < l && baseAngles[first]==termini[first].getAngle()) first++;
+            if (first==l) return;
+            while (baseAngles[last]==termini[last].getAngle()) last--;
+        }
+        Point.Accumulator sum = Point.createAccumulator();
+        if (first > 0) sum.set(bases[first-1]);
+        for (int i = first; i < l; i++) {
+            baseAngles[i] = termini[i].getAngle();
+            Point p = sum.addUnit(baseAngles[i]).toPoint();
+            // past the last change, the base points are the same as before
+            if (i > last && p.equals(bases[i])) break;
+            bases[i] = p;
+        }
     }
 
     /**
@@ -1204,8 +2101,19 @@ public class RhombBoundary implements Serializable {
      * Check all permutations of an input list for 
      * compatibility with all rhombs.  
      * sym tells us whether or not to symmetrize the boundaries.  
-     * This method writes to stdout all permutations of i that yield 
-     * valid tilings for each inflated prototile.  
+     * This method sends to sink all permutations of i that yield 
+     * valid tilings for each inflated prototile, as soon as they are found.  
+     * The search runs in the background: this returns straight away, 
+     * and the {@link BoundarySearch} that it returns can be used to 
+     * watch the search, cancel it, or wait for it to finish.  
+     * The permutations are indexed, and the range of indices is split 
+     * among the threads of the ForkJoinPool in 
+     * {@link GeneralThreadService}, so the search scales with the number 
+     * of cores.  
+     * If the boundaries are not symmetric, we only test one permutation 
+     * from each orbit under reversing and changing the signs of the 
+     * decoded sequences, whenever these operations can be done on the 
+     * permutations themselves (see {@link EdgeSymmetry}).  
      * @param i The seed that we use to produce edge sequences.  All edge 
      * sequences are obtained by permuting i and then applying rule to replace 
      * symbols.  
@@ -1215,91 +2123,167 @@ public class RhombBoundary implements Serializable {
      * number n wherever it appears in the sequence i, or any of its permutations.  
      * @param pre A list of ints to prepend to each permutation.  
      * @param suf A list of ints to append to each permutation.  
+     * @param sink Receives the valid sequences.  Its {@link ResultSink#done()} 
+     * method is called when the search is finished.  
+     * @param expand If true, all valid sequences are sent to sink.  If false, 
+     * only one valid sequence from each orbit is sent.  
+     * @param checkpointFile If this isn't null, we save a record of the 
+     * ranges of permutations searched so far, and the valid sequences found 
+     * in them, to this file every {@link SearchCheckpoint#SAVE_INTERVAL} 
+     * milliseconds and at the end of the search.  
+     * @param resume If true and checkpointFile exists, we resume the search 
+     * recorded there: the valid sequences it lists are sent to sink, and 
+     * the ranges it lists are not searched again.  
+     * @param coordinator If this isn't null, the search is done by the 
+     * {@link SearchWorker}s connected to it, instead of on this JVM.  
+     * @return A handle on the search.  
      */
-    public static void allValid(int[] i,boolean sym,List<List<Integer>> rule,int[] pre, int[] suf) {
+    public static BoundarySearch allValid(int[] i,boolean sym,List<List<Integer>> rule,int[] pre, int[] suf, final ResultSink sink, boolean expand, String checkpointFile, boolean resume, final SearchCoordinator coordinator) {
         System.out.println(vectorString(i));
-        Integer[] ii = new Integer[i.length];
-        for (int j = 0; j < ii.length; j++) ii[j] = i[j];
-        MultiSetLinkedList perm = MultiSetLinkedList.createMultiSetLinkedList(ii);
-        int[] first = perm.getArray();
-        int[] current = first;
-        boolean done = false;
-        boolean pastFirst = false;
-        LinkedList<Future<Result>> listOfFutures = new LinkedList<>();
-        int searchCount = 0;
-
-        // keep making work units until we've searched everything
-        while (!done) {
-            // new batch: reset the search count
-            searchCount = 0;
-            // search up to BATCH_SIZE permutations at one time, until we're done
-            while ((!done)&&searchCount<BATCH_SIZE) {
-                // create work units
-                MultiSetLinkedList clone = perm.deepCopy();
-                int j = 0;
-                for (; j < WORK_UNIT_LENGTH; j++) {
-                    if (Arrays.equals(first,perm.getArray())) {
-                        if (pastFirst) {
-                            done = true;
-                            break;
-                        } else {
-                            pastFirst = true;
-                        }
-                    }
-                    if (searchCount==BATCH_SIZE) break;
-                    perm.iterate();
-                    searchCount++;
-                }
-                if (j > 0) {
-                    BoundaryWorkUnit wu = (rule==null) ? new BoundaryWorkUnit(clone,j,sym) : new BoundaryWorkUnit(clone,j,sym,rule,pre,suf);
-                    listOfFutures.add(GeneralThreadService.INSTANCE.getExecutor().submit(wu));
-                }
-            } // end of while(searchCount<BATCH_SIZE)
-
-            // poll the futures
-            while (true) {
-                // poll every 250 milliseconds
-                try {
-                    Thread.sleep(250L);
-                }
-                catch (InterruptedException e) {
-                }
-
-                int numberComplete = 0;
-                for (Future<Result> thisFuture : listOfFutures) {
-                    if ( thisFuture.isDone() )
-                        numberComplete++;
-                }
-                System.out.print(String.format("%d of %d work units complete\r", numberComplete, listOfFutures.size()));
-                if ( numberComplete == listOfFutures.size() )
-                    break;
+        final long total = MultiSetPermutation.createMultiSetPermutation(i).count();
+        final BoundaryWorkUnit all = (rule==null) ? new BoundaryWorkUnit(i,0,total,sym,sink) : new BoundaryWorkUnit(i,0,total,sym,rule,pre,suf,sink);
+        all.reduceSymmetry(expand);
+        long searched = 0;
+        long numberFound = 0;
+        SearchCheckpoint checkpoint = null;
+        if (checkpointFile!=null) {
+            String description = "N=" + Point.N() + " i=" + vectorString(i) + " sym=" + sym + " expand=" + expand;
+            if (rule!=null) description += " rule=" + rule + " pre=" + ((pre==null) ? "none" : vectorString(pre)) + " suf=" + ((suf==null) ? "none" : vectorString(suf));
+            checkpoint = SearchCheckpoint.createSearchCheckpoint(checkpointFile,description,total,resume);
+            for (int[] k : checkpoint.getResults()) {
+                sink.accept(k);
+                numberFound++;
             }
-            System.out.println();
-
-            // count how many edges have been added
-            for (Future<Result> thisFuture : listOfFutures) {
+            searched = checkpoint.searched();
+        }
+        final BoundarySearch search = BoundarySearch.createBoundarySearch(total,searched,numberFound);
+        all.setSearch(search);
+        final BoundarySearchTask task = new BoundarySearchTask(all,search,checkpoint);
+        final SearchCheckpoint record = checkpoint;
+        // when the search stops, for whatever reason, save the 
+        // checkpoint and tell the sink
+        Callable<Long> root = new Callable<Long>() {
+            public Long call() throws InterruptedException {
+                boolean finished = false;
                 try {
-                    List<int[]> nextInt = ((BoundaryResult)thisFuture.get()).getValids();
-                    if (nextInt.size()>0) {
-                        for (int[] k : nextInt) {
-                            System.out.print("result: ");
-                            for (int t : k) {
-                                System.out.print(t + " ");
-                            }
-                            System.out.print("\n");
-                        }
-                    }
-                }
-                catch (Exception e) {
-                    e.printStackTrace();
+                    long output = (coordinator==null) ? task.invoke() : coordinator.search(all,sink,search,record);
+                    finished = true;
+                    return output;
+                } finally {
+                    // if the search threw, part of the range wasn't searched
+                    if (!finished) search.fail();
+                    System.err.println(search.progress());
+                    if (record!=null) record.save();
+                    sink.done();
+                    search.finish();
+                    if (search.isFailed()) System.out.println("search failed! the results are incomplete.");
+                    else System.out.println(search.isCancelled() ? "search cancelled!" : "all done!");
                 }
             }
-            listOfFutures.clear();
-        } // end of big while loop
-
-        System.out.println("all done!");
+        };
+        if (coordinator==null) {
+            search.start(GeneralThreadService.INSTANCE.getForkJoinPool().submit(root));
+        } else {
+            // the coordinator spends its time waiting, so give it a thread of its own
+            FutureTask<Long> waiting = new FutureTask<Long>(root);
+            new Thread(waiting, "search coordinator").start();
+            search.start(waiting);
+        }
+        return search;
     } // end of allValid()
 
+    /**
+     * Check all permutations of an input list for 
+     * compatibility with all rhombs.  
+     * This is the same as {@link #allValid(int[],boolean,List,int[],int[],ResultSink,boolean,String,boolean,SearchCoordinator)}, 
+     * except that it runs on this JVM.  
+     * @param i The seed that we use to produce edge sequences.  All edge 
+     * sequences are obtained by permuting i and then applying rule to replace 
+     * symbols.  
+     * @param sym Tells us whether or not to symmetrize the RhombBoundaries 
+     * that we construct.  
+     * @param rule A list of lists.  The nth entry tells us how to replace the 
+     * number n wherever it appears in the sequence i, or any of its permutations.  
+     * @param pre A list of ints to prepend to each permutation.  
+     * @param suf A list of ints to append to each permutation.  
+     * @param sink Receives the valid sequences.  
+     * @param expand If true, all valid sequences are sent to sink.  If false, 
+     * only one valid sequence from each orbit is sent.  
+     * @param checkpointFile If this isn't null, we save a record of the 
+     * search to this file.  
+     * @param resume If true and checkpointFile exists, we resume the search 
+     * recorded there.  
+     * @return A handle on the search.  
+     */
+    public static BoundarySearch allValid(int[] i,boolean sym,List<List<Integer>> rule,int[] pre, int[] suf, ResultSink sink, boolean expand, String checkpointFile, boolean resume) {
+        return allValid(i,sym,rule,pre,suf,sink,expand,checkpointFile,resume,null);
+    }
+
+    /**
+     * Check all permutations of an input list for 
+     * compatibility with all rhombs.  
+     * This is the same as {@link #allValid(int[],boolean,List,int[],int[],ResultSink,boolean,String,boolean,SearchCoordinator)}, 
+     * except that it doesn't save a record of the search, and it runs on this JVM.  
+     * @param i The seed that we use to produce edge sequences.  All edge 
+     * sequences are obtained by permuting i and then applying rule to replace 
+     * symbols.  
+     * @param sym Tells us whether or not to symmetrize the RhombBoundaries 
+     * that we construct.  
+     * @param rule A list of lists.  The nth entry tells us how to replace the 
+     * number n wherever it appears in the sequence i, or any of its permutations.  
+     * @param pre A list of ints to prepend to each permutation.  
+     * @param suf A list of ints to append to each permutation.  
+     * @param sink Receives the valid sequences.  
+     * @param expand If true, all valid sequences are sent to sink.  If false, 
+     * only one valid sequence from each orbit is sent.  
+     * @return A handle on the search.  
+     */
+    public static BoundarySearch allValid(int[] i,boolean sym,List<List<Integer>> rule,int[] pre, int[] suf, ResultSink sink, boolean expand) {
+        return allValid(i,sym,rule,pre,suf,sink,expand,null,false,null);
+    }
+
+    /**
+     * Check all permutations of an input list for 
+     * compatibility with all rhombs.  
+     * This is the same as {@link #allValid(int[],boolean,List,int[],int[],ResultSink,boolean)}, 
+     * except that it sends all valid sequences to the sink, not just 
+     * one from each orbit.  
+     * @param i The seed that we use to produce edge sequences.  All edge 
+     * sequences are obtained by permuting i and then applying rule to replace 
+     * symbols.  
+     * @param sym Tells us whether or not to symmetrize the RhombBoundaries 
+     * that we construct.  
+     * @param rule A list of lists.  The nth entry tells us how to replace the 
+     * number n wherever it appears in the sequence i, or any of its permutations.  
+     * @param pre A list of ints to prepend to each permutation.  
+     * @param suf A list of ints to append to each permutation.  
+     * @param sink Receives the valid sequences.  
+     * @return A handle on the search.  
+     */
+    public static BoundarySearch allValid(int[] i,boolean sym,List<List<Integer>> rule,int[] pre, int[] suf, ResultSink sink) {
+        return allValid(i,sym,rule,pre,suf,sink,true);
+    }
+
+    /**
+     * Check all permutations of an input list for 
+     * compatibility with all rhombs.  
+     * This is the same as {@link #allValid(int[],boolean,List,int[],int[],ResultSink)}, 
+     * except that it writes the valid sequences to stdout.  
+     * @param i The seed that we use to produce edge sequences.  All edge 
+     * sequences are obtained by permuting i and then applying rule to replace 
+     * symbols.  
+     * @param sym Tells us whether or not to symmetrize the RhombBoundaries 
+     * that we construct.  
+     * @param rule A list of lists.  The nth entry tells us how to replace the 
+     * number n wherever it appears in the sequence i, or any of its permutations.  
+     * @param pre A list of ints to prepend to each permutation.  
+     * @param suf A list of ints to append to each permutation.  
+     * @return A handle on the search.  
+     */
+    public static BoundarySearch allValid(int[] i,boolean sym,List<List<Integer>> rule,int[] pre, int[] suf) {
+        return allValid(i,sym,rule,pre,suf,ResultSink.STDOUT);
+    }
+
     /**
      * Check all permutations of an input list for 
      * compatibility with all rhombs.  
@@ -1315,9 +2299,10 @@ public class RhombBoundary implements Serializable {
      * that we construct.  
      * @param rule A list of lists.  The nth entry tells us how to replace the 
      * number n wherever it appears in the sequence i, or any of its permutations.  
+     * @return A handle on the search.  
      */
-    public static void allValid(int[] i,boolean sym,List<List<Integer>> rule) {
-        allValid(i,sym,rule,null,null);
+    public static BoundarySearch allValid(int[] i,boolean sym,List<List<Integer>> rule) {
+        return allValid(i,sym,rule,null,null);
     }
 
     /**
@@ -1332,9 +2317,10 @@ public class RhombBoundary implements Serializable {
      * symbols.  
      * @param sym Tells us whether or not to symmetrize the RhombBoundaries 
      * that we construct.  
+     * @return A handle on the search.  
      */
-    public static void allValid(int[] i,boolean sym) {
-        allValid(i,sym,null);
+    public static BoundarySearch allValid(int[] i,boolean sym) {
+        return allValid(i,sym,null);
     }
 
     /**
@@ -1407,13 +2393,12 @@ public class RhombBoundary implements Serializable {
     public int[][][] yarnDump() {
         int len = termini.length;
         int[][][] output = new int[2][yarns.length][];
-        List<Yarn> l = Arrays.asList(yarns);
         for (int i = 0; i < yarns.length; i++) {
             output[0][i] = new int[] {len - 1 - yarns[i].getStartIndex(),len - 1 - yarns[i].getEndIndex()};
             List<Yarn> cross = yarns[i].getCross();
             output[1][i] = new int[cross.size()];
             for (int j = cross.size()-1; j >= 0; j--) {
-                output[1][i][j] = l.indexOf(cross.get(j));
+                output[1][i][j] = cross.get(j).getId();
             }
         }
         return output;
@@ -1590,7 +2575,33 @@ public class RhombBoundary implements Serializable {
         ttt = new int[] {0,0,0,1,1,1,2,2,3}; // should work with N = 7
         ttt = new int[] {0,0,1,1,2}; // should work with N = 5
         Point.setN(5);
-        allValid(ttt,true,allBumps);
+        // run with -checkpoint <file> to save the progress of the search, 
+        // and with -resume as well to carry on from where it stopped.  
+        // run with -coordinator <port> to hand the search out to 
+        // SearchWorkers that connect to that port, and with -loopback <k> 
+        // as well to start k of them in this JVM
+        String checkpointFile = null;
+        boolean resume = false;
+        int port = -1;
+        int loopback = 0;
+        for (int k = 0; k < args.length; k++) {
+            if (args[k].equals("-checkpoint")&&k+1<args.length) checkpointFile = args[++k];
+            else if (args[k].equals("-resume")) resume = true;
+            else if (args[k].equals("-coordinator")&&k+1<args.length) port = Integer.parseInt(args[++k]);
+            else if (args[k].equals("-loopback")&&k+1<args.length) loopback = Integer.parseInt(args[++k]);
+        }
+        SearchCoordinator coordinator = null;
+        if (port >= 0) {
+            try {
+                coordinator = SearchCoordinator.createSearchCoordinator(port);
+            } catch (IOException e) {
+                System.err.println("Can't listen on port " + port + ": " + e);
+                return;
+            }
+            coordinator.startLoopbackWorkers(loopback);
+        }
+        allValid(ttt,true,allBumps,null,null,ResultSink.STDOUT,true,checkpointFile,resume,coordinator).awaitResults(System.err);
+        if (coordinator!=null) coordinator.close();
 //        allValid(ttt,true,allBumps,pre,suf);
 //        allValid(ttt,false);
 
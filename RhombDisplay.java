@@ -116,6 +116,11 @@ class HexButton extends JButton {
         return t.equals(tt);
     }
 
+    // the hexagon on which this is located
+    Hex getHex() {
+        return t;
+    }
+
     public boolean contains(int x, int y) {
         if (mouseHex.contains((double)x,(double)y)) {
             return true;
@@ -163,7 +168,7 @@ public class RhombDisplay extends JPanel implements ActionListener
     public static final double SCALE = 30.0;
     private final RhombBoundary r;
     private List<Rhomb> joins;
-    private List<HexButton> buttons;
+    private IndexedList<HexButton> buttons;
     private final int xmin;
     private final int ymin;
     private final int width;
@@ -248,7 +253,14 @@ public class RhombDisplay extends JPanel implements ActionListener
     {
         setLayout(null);
 
-        buttons = new LinkedList<>();
+        // find the button on a Hex from the rhombs it contains
+        buttons = new IndexedList<HexButton>() {
+            protected Object key(Object o) {
+                if (o instanceof HexButton) return HexList.keyOf(((HexButton) o).getHex());
+                if (o instanceof Hex) return HexList.keyOf((Hex) o);
+                return null;
+            }
+        };
         for (Hex t : r.getTriples()) {
             HexButton b = HexButton.createHexButton(t,this,this.r);
             buttons.add(b);
@@ -278,16 +290,11 @@ public class RhombDisplay extends JPanel implements ActionListener
      */
     public void flushButtons(List<Hex> l) {
         for (Hex t : l) {
-            boolean add = true;
-            for (HexButton hb : buttons) {
-                if (hb.hasTriple(t)) {
-                    remove(hb);
-                    buttons.remove(hb);
-                    add = false;
-                    break;
-                }
-            }
-            if (add) {
+            HexButton hb = buttons.find(t);
+            if (hb!=null) {
+                remove(hb);
+                buttons.remove(hb);
+            } else {
                 HexButton b = HexButton.createHexButton(t,this,this.r);
                 buttons.add(b);
                 add(b);
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.io.*;
+
+/**
+ *  A record of how far a search by
+ *  {@link RhombBoundary#allValid(int[],boolean,List,int[],int[],ResultSink,boolean,String,boolean)}
+ *  has got, so that it can be resumed if it is interrupted.  
+ *  The permutations searched are indexed by their ranks, so we store
+ *  the ranges of ranks that have been searched completely, together with
+ *  the valid sequences found in those ranges.  Ranges that were only
+ *  partly searched when the search stopped are searched again when it
+ *  is resumed, so each valid sequence is recorded exactly once.  
+ *  The record is saved to a file every {@link #SAVE_INTERVAL} milliseconds,
+ *  using {@link FileManager#saveSearchCheckpoint(String,SearchCheckpoint)}.  
+ */
+public class SearchCheckpoint implements Serializable {
+
+    /** For serialization. */
+    public static final long serialVersionUID = 5512L;
+
+    /** How often we save, in milliseconds.  */
+    public static final long SAVE_INTERVAL = 60000L;
+
+    /**
+     * A description of the search, so that we don't resume
+     * a different search by mistake.  
+     */
+    private final String description;
+    /** The number of permutations in the search.  */
+    private final long total;
+    /**
+     * The ranges of ranks that have been searched.  Each entry maps
+     * the start of a range to its end (exclusive).  The ranges don't
+     * overlap or touch each other.  
+     */
+    private final TreeMap<Long,Long> done;
+    /** The valid sequences found in the ranges that have been searched.  */
+    private final List<int[]> results;
+
+    /** The file that we save to.  */
+    private transient String fileName;
+    /** When we last saved.  */
+    private transient long lastSave;
+    /** Has anything changed since we last saved?  */
+    private transient boolean changed;
+
+    // private constructor
+    private SearchCheckpoint(String description, long total) {
+        this.description = description;
+        this.total = total;
+        this.done = new TreeMap<>();
+        this.results = new ArrayList<>();
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @param fileName The file that we save to.  
+     *  @param description A description of the search.  If we resume from
+     *  fileName, then the description saved there must be the same.  
+     *  @param total The number of permutations in the search.  
+     *  @param resume If true and fileName exists, we start from the
+     *  record saved in it.  Otherwise we start with nothing searched.  
+     *  @return A record of the search.  
+     *  @throws IllegalArgumentException If we're resuming from a file that
+     *  describes a different search.  
+     */
+    public static SearchCheckpoint createSearchCheckpoint(String fileName, String description, long total, boolean resume) {
+        SearchCheckpoint output = null;
+        if (resume && new File(fileName).isFile()) {
+            output = FileManager.loadSearchCheckpoint(fileName);
+            if (output == null) throw new IllegalArgumentException("Can't resume from " + fileName + ".");
+            if (!output.description.equals(description) || output.total != total) throw new IllegalArgumentException(fileName + " is a record of a different search: " + output.description);
+        } else {
+            output = new SearchCheckpoint(description,total);
+        }
+        output.fileName = fileName;
+        output.lastSave = System.currentTimeMillis();
+        return output;
+    }
+
+    /**
+     *  Has the range from start to end been searched completely?
+     *  @param start The first rank in the range.  
+     *  @param end The rank after the last one in the range.  
+     *  @return true if every rank in the range has been searched.  
+     */
+    public synchronized boolean isDone(long start, long end) {
+        Map.Entry<Long,Long> e = done.floorEntry(start);
+        return e != null && e.getValue() >= end;
+    }
+
+    /**
+     *  Find the parts of a range that haven't been searched.  
+     *  @param start The first rank in the range.  
+     *  @param end The rank after the last one in the range.  
+     *  @return The unsearched parts of the range, in increasing order, as
+     *  pairs {start, end}.  
+     */
+    public synchronized List<long[]> notDone(long start, long end) {
+        List<long[]> output = new ArrayList<>();
+        Map.Entry<Long,Long> e = done.floorEntry(start);
+        long next = (e != null && e.getValue() > start) ? e.getValue() : start;
+        for (Map.Entry<Long,Long> f : done.subMap(start,false,end,false).entrySet()) {
+            if (f.getKey() > next) output.add(new long[] {next, f.getKey()});
+            next = Math.max(next,f.getValue());
+        }
+        if (next < end) output.add(new long[] {next, end});
+        return output;
+    }
+
+    /**
+     *  Record that a range has been searched.  
+     *  @param start The first rank in the range.  
+     *  @param end The rank after the last one in the range.  
+     *  @param found The valid sequences found in the range.  
+     */
+    public synchronized void complete(long start, long end, List<int[]> found) {
+        results.addAll(found);
+        // merge with the ranges that overlap or touch this one
+        Map.Entry<Long,Long> e = done.floorEntry(start);
+        if (e != null && e.getValue() >= start) {
+            start = e.getKey();
+            end = Math.max(end,e.getValue());
+        }
+        Map.Entry<Long,Long> f = done.ceilingEntry(start);
+        while (f != null && f.getKey() <= end) {
+            end = Math.max(end,f.getValue());
+            done.remove(f.getKey());
+            f = done.ceilingEntry(start);
+        }
+        done.put(start,end);
+        changed = true;
+    }
+
+    /**
+     *  The number of permutations that have been searched.  
+     *  @return The total length of the ranges that have been searched.  
+     */
+    public synchronized long searched() {
+        long output = 0;
+        for (Map.Entry<Long,Long> e : done.entrySet()) output += e.getValue() - e.getKey();
+        return output;
+    }
+
+    /**
+     *  The valid sequences found so far.  
+     *  @return A copy of the list of valid sequences.  
+     */
+    public synchronized List<int[]> getResults() {
+        return new ArrayList<>(results);
+    }
+
+    /** Getter method.  */
+    public long getTotal() {
+        return total;
+    }
+
+    /** Getter method.  */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     *  Save to the file, if anything has changed and it's been at least
+     *  {@link #SAVE_INTERVAL} milliseconds since we last saved.  
+     */
+    public void saveIfDue() {
+        if (changed && System.currentTimeMillis() - lastSave >= SAVE_INTERVAL) save();
+    }
+
+    /**
+     *  Save to the file.  
+     */
+    public synchronized void save() {
+        FileManager.saveSearchCheckpoint(fileName,this);
+        changed = false;
+        lastSave = System.currentTimeMillis();
+    }
+
+    /**
+     *  Output a String representation of this.  
+     *  @return A String containing the description and the number of
+     *  permutations searched.  
+     */
+    public String toString() {
+        return description + ": " + searched() + " of " + total + " searched";
+    }
+
+} // end of class SearchCheckpoint
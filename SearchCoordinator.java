@@ -0,0 +1,389 @@
+import java.io.*;
+import java.net.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  A class for spreading a search over several JVMs, possibly on
+ *  different machines.  
+ *  Each {@link SearchWorker} connects to the coordinator over a socket.  
+ *  The coordinator splits the range of a {@link RangeWorkUnit} into
+ *  chunks and sends each chunk, as a serialized work unit, to the next
+ *  worker that is free.  The worker sends back each valid sequence as
+ *  soon as it finds it, and then the {@link Result}.  
+ *  We keep the sequences from a chunk until its Result arrives, so if a
+ *  worker goes away in the middle of a chunk, we give the whole chunk to
+ *  another worker and nothing is reported twice.  If a worker fails on
+ *  a chunk, we hand it out again, up to {@link #MAX_ATTEMPTS} times, and
+ *  after that the search fails.  
+ *  If the search is cancelled, we send {@link SearchWorker#STOP} to each
+ *  worker that has a chunk, so that it stops and tells us how far it got.  
+ *  A worker JVM may open several connections, one for each thread it
+ *  wants to use.  
+ *  For testing, {@link #startLoopbackWorkers(int)} starts workers in this
+ *  JVM that connect over the loopback interface, so the work units and
+ *  results still go through serialization and sockets.  
+ */
+public class SearchCoordinator {
+
+    /** The port that we listen on if none is given.  */
+    public static final int DEFAULT_PORT = 5510;
+    /** The number of ranks in a chunk if none is given.  */
+    public static final long DEFAULT_CHUNK_LENGTH = 100000L;
+    /** How many times we hand out a chunk on which workers have failed before we give up.  */
+    public static final int MAX_ATTEMPTS = 3;
+
+    /** The socket on which workers connect.  */
+    private final ServerSocket server;
+    /** The number of ranks in each chunk that we hand out.  */
+    private final long chunkLength;
+    /** The search that we're doing now, or null.  */
+    private Job job = null;
+    /** The number of workers connected.  */
+    private int workers = 0;
+
+    // private constructor
+    private SearchCoordinator(int port, long chunkLength) throws IOException {
+        if (chunkLength < 1) throw new IllegalArgumentException("Chunks must contain at least one rank, not " + chunkLength + ".");
+        this.server = new ServerSocket(port);
+        this.chunkLength = chunkLength;
+        Thread listener = new Thread(new Runnable() {
+            public void run() {
+                listen();
+            }
+        }, "search coordinator listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    /**
+     *  Public static factory method.  
+     *  Start listening for workers.  
+     *  @param port The port on which to listen, or 0 for any free port.  
+     *  @param chunkLength The number of ranks in each chunk that we
+     *  hand out to a worker.  
+     *  @return A coordinator that is listening on port.  
+     *  @throws IOException If we can't listen on port.  
+     */
+    public static SearchCoordinator createSearchCoordinator(int port, long chunkLength) throws IOException {
+        return new SearchCoordinator(port,chunkLength);
+    }
+
+    /**
+     *  Public static factory method.  
+     *  Same as {@link #createSearchCoordinator(int,long)}, with
+     *  chunks of {@link #DEFAULT_CHUNK_LENGTH} ranks.  
+     *  @param port The port on which to listen, or 0 for any free port.  
+     *  @return A coordinator that is listening on port.  
+     *  @throws IOException If we can't listen on port.  
+     */
+    public static SearchCoordinator createSearchCoordinator(int port) throws IOException {
+        return new SearchCoordinator(port,DEFAULT_CHUNK_LENGTH);
+    }
+
+    /**
+     *  The port on which we listen.  
+     *  @return The local port of the server socket.  
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     *  The number of workers connected.  
+     *  @return The number of open connections from workers.  
+     */
+    public synchronized int getWorkers() {
+        return workers;
+    }
+
+    /**
+     *  Start workers in this JVM that connect to this coordinator over
+     *  the loopback interface.  They run until the coordinator is closed.  
+     *  @param count The number of workers to start.  
+     */
+    public void startLoopbackWorkers(int count) {
+        for (int i = 0; i < count; i++) {
+            Thread t = new Thread(SearchWorker.createSearchWorker(InetAddress.getLoopbackAddress().getHostAddress(),getPort()), "loopback search worker " + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     *  Stop listening.  Workers that are connected are disconnected
+     *  when they next ask for work.  
+     */
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+        }
+    }
+
+    /**
+     *  Accept connections from workers until the server socket is closed.  
+     */
+    private void listen() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        serve(socket);
+                    }
+                }, "search coordinator connection " + socket.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) System.err.println("Error accepting a search worker: " + e);
+            }
+        }
+    }
+
+    /**
+     *  Hand out chunks to one worker, and collect what it finds,
+     *  until it goes away or the server socket is closed.  
+     *  @param socket The connection to the worker.  
+     */
+    private void serve(Socket socket) {
+        synchronized (this) {
+            workers++;
+        }
+        Job current = null;
+        long[] chunk = null;
+        try (Socket s = socket) {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(s.getInputStream()));
+            while (true) {
+                synchronized (this) {
+                    while (!server.isClosed() && (job == null || !job.hasWork())) wait(1000L);
+                    if (server.isClosed()) break;
+                    current = job;
+                    chunk = current.take();
+                }
+                synchronized (out) {
+                    out.writeObject(current.unit.range(chunk[0],chunk[1]-chunk[0],null));
+                    out.flush();
+                    out.reset();
+                    current.busy.add(out);
+                }
+                List<int[]> found = new ArrayList<>();
+                Object reply = in.readObject();
+                while (reply instanceof int[]) {
+                    found.add((int[]) reply);
+                    reply = in.readObject();
+                }
+                current.busy.remove(out);
+                if (reply instanceof Result) {
+                    current.complete(chunk,((Result) reply).getProcessed(),found);
+                } else {
+                    System.err.println("Search worker " + s.getRemoteSocketAddress() + " failed on ranks " + chunk[0] + " to " + chunk[1] + ":");
+                    if (reply instanceof Throwable) ((Throwable) reply).printStackTrace();
+                    current.fail(chunk);
+                }
+                chunk = null;
+            }
+            // tell the worker that there's nothing more to do
+            out.writeObject(null);
+            out.flush();
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Lost search worker " + socket.getRemoteSocketAddress() + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                workers--;
+            }
+            // someone else will have to do it
+            if (chunk != null) current.giveBack(chunk);
+        }
+    }
+
+    /**
+     *  Search the whole range of a work unit, using the workers that
+     *  are connected, and wait until we're done.  
+     *  The ranges that we search are recorded in search and checkpoint
+     *  as they are finished, as for a search on this JVM.  
+     *  If search is cancelled, we stop handing out chunks, tell the 
+     *  workers to stop the ones that have been handed out, and wait for
+     *  them to say how far they got.  If no workers connect, we wait 
+     *  until they do.  
+     *  @param unit A work unit describing the whole search.  
+     *  @param sink Receives what the workers find.  
+     *  @param search The handle on the search.  
+     *  @param checkpoint A record of the ranges searched so far, or null.  
+     *  @return The number of valid sequences found.  
+     *  @throws InterruptedException If we're interrupted while waiting.  
+     *  @throws IllegalStateException If the workers failed on a chunk 
+     *  {@link #MAX_ATTEMPTS} times, so part of the range wasn't searched.  
+     *  The search is marked as failed, and we stop handing out chunks.  
+     */
+    public long search(RangeWorkUnit unit, ResultSink sink, BoundarySearch search, SearchCheckpoint checkpoint) throws InterruptedException {
+        Job j = new Job(unit,sink,search,checkpoint);
+        synchronized (this) {
+            if (job != null) throw new IllegalArgumentException("This coordinator is already running a search.");
+            job = j;
+            notifyAll();
+            try {
+                while (!j.isDone()) {
+                    if (search.isCancelled()) j.stopWorkers();
+                    wait(250L);
+                }
+            } finally {
+                job = null;
+            }
+        }
+        if (j.failed != null) throw new IllegalStateException("Search workers failed " + MAX_ATTEMPTS + " times on ranks " + j.failed[0] + " to " + j.failed[1] + ", so the search is incomplete.");
+        return j.found;
+    }
+
+    /**
+     *  Output a String representation of this.  
+     *  @return A String containing the port and the number of workers.  
+     */
+    public String toString() {
+        return "search coordinator on port " + getPort() + " with " + getWorkers() + " workers";
+    }
+
+    /**
+     *  A search that we're running on the workers.  
+     *  The methods are called while holding the lock on the coordinator.  
+     */
+    private class Job {
+
+        /** A work unit describing the whole search.  */
+        private final RangeWorkUnit unit;
+        /** Receives what the workers find.  */
+        private final ResultSink sink;
+        /** The handle on the search.  */
+        private final BoundarySearch search;
+        /** A record of the ranges searched so far, or null.  */
+        private final SearchCheckpoint checkpoint;
+        /** The chunks that haven't been handed out, as pairs {start, end}.  */
+        private final Deque<long[]> chunks = new ArrayDeque<>();
+        /** The number of chunks that have been handed out and not finished.  */
+        private int outstanding = 0;
+        /** The number of valid sequences found.  */
+        private long found = 0;
+        /** The number of times workers have failed on each chunk, by the rank at which it starts.  */
+        private final Map<Long,Integer> attempts = new HashMap<>();
+        /** The chunk on which we gave up, or null.  */
+        private long[] failed = null;
+        /** The streams to the workers that are working on a chunk.  */
+        private final Set<ObjectOutputStream> busy = ConcurrentHashMap.newKeySet();
+        /** Have we told the workers to stop?  */
+        private boolean stopped = false;
+
+        // constructor
+        private Job(RangeWorkUnit unit, ResultSink sink, BoundarySearch search, SearchCheckpoint checkpoint) {
+            this.unit = unit;
+            this.sink = sink;
+            this.search = search;
+            this.checkpoint = checkpoint;
+            long start = unit.getStart();
+            long end = start + unit.getMax();
+            List<long[]> ranges = new ArrayList<>();
+            if (checkpoint == null) ranges.add(new long[] {start, end});
+            else ranges = checkpoint.notDone(start,end);
+            for (long[] r : ranges) {
+                for (long s = r[0]; s < r[1]; s += chunkLength) chunks.add(new long[] {s, Math.min(r[1],s+chunkLength)});
+            }
+        }
+
+        /** Is there a chunk to hand out?  */
+        private boolean hasWork() {
+            return !chunks.isEmpty() && !search.isCancelled() && failed == null;
+        }
+
+        /** Are all of the chunks finished (or abandoned, if we've been cancelled or failed)?  */
+        private boolean isDone() {
+            return outstanding == 0 && !hasWork();
+        }
+
+        /** Hand out the next chunk.  */
+        private long[] take() {
+            outstanding++;
+            return chunks.poll();
+        }
+
+        /**
+         * Tell the workers that are working on a chunk to stop, the first 
+         * time that this is called.  They send back a Result saying how far
+         * they got, as usual.  
+         */
+        private void stopWorkers() {
+            if (stopped) return;
+            stopped = true;
+            for (ObjectOutputStream out : busy) {
+                synchronized (out) {
+                    if (!busy.contains(out)) continue;
+                    try {
+                        out.writeObject(SearchWorker.STOP);
+                        out.flush();
+                    } catch (IOException e) {
+                        // the connection will notice that the worker has gone
+                    }
+                }
+            }
+        }
+
+        /** Put back a chunk that a worker didn't finish.  */
+        private void giveBack(long[] chunk) {
+            synchronized (SearchCoordinator.this) {
+                outstanding--;
+                chunks.addFirst(chunk);
+                SearchCoordinator.this.notifyAll();
+            }
+        }
+
+        /**
+         * Deal with a chunk that a worker couldn't search.  We put it at 
+         * the back of the queue, so that another worker can try it, unless 
+         * workers have failed on it {@link #MAX_ATTEMPTS} times, in which 
+         * case we give up on the whole search.  The chunk is left out of 
+         * the checkpoint, so it is searched again if we resume.  
+         */
+        private void fail(long[] chunk) {
+            synchronized (SearchCoordinator.this) {
+                outstanding--;
+                int n = attempts.merge(chunk[0],1,Integer::sum);
+                if (n < MAX_ATTEMPTS) {
+                    chunks.addLast(chunk);
+                } else if (failed == null) {
+                    failed = chunk;
+                    search.fail();
+                }
+                SearchCoordinator.this.notifyAll();
+            }
+        }
+
+        /**
+         * Record the results of a chunk.  If the worker only searched the
+         * beginning of the chunk, we put the rest back.  
+         */
+        private void complete(long[] chunk, long processed, List<int[]> results) {
+            for (int[] r : results) sink.accept(r);
+            if (checkpoint != null) {
+                checkpoint.complete(chunk[0],chunk[0]+processed,results);
+                checkpoint.saveIfDue();
+            }
+            search.record(processed,results.size());
+            synchronized (SearchCoordinator.this) {
+                found += results.size();
+                outstanding--;
+                if (chunk[0]+processed < chunk[1]) chunks.addFirst(new long[] {chunk[0]+processed, chunk[1]});
+                SearchCoordinator.this.notifyAll();
+            }
+        }
+
+    } // end of class Job
+
+} // end of class SearchCoordinator
@@ -0,0 +1,226 @@
+import java.io.*;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ *  A class for doing part of a search for a {@link SearchCoordinator},
+ *  possibly on a different machine.  
+ *  A worker connects to the coordinator, and then repeatedly receives a
+ *  {@link RangeWorkUnit}, calls it, and sends back each sequence that it
+ *  finds followed by the {@link Result}, until the coordinator tells it
+ *  that there's nothing more to do or the connection is lost.  
+ *  We read from the coordinator on a separate thread, so that if it
+ *  sends {@link #STOP} while we're working on a unit, or goes away, we
+ *  stop that unit (by interrupting the thread running it) and send back
+ *  a Result saying how far we got.  
+ *  Each worker uses one thread; {@link #main(String[])} starts one for
+ *  each processor, on the search threads of {@link GeneralThreadService}.  
+ *  There is one search thread for each processor, so asking for more
+ *  workers than that gets a warning and no more than that.  
+ */
+public class SearchWorker implements Runnable {
+
+    /**
+     *  The message that a coordinator sends to stop the work unit that
+     *  we're running, because the search has been cancelled.  
+     */
+    public static final String STOP = "stop";
+    /** What the reading thread puts on the queue when there are no more work units.  */
+    private static final Object END = new Object();
+
+    /** The host on which the coordinator is running.  */
+    private final String host;
+    /** The port on which the coordinator is listening.  */
+    private final int port;
+    /** The number of work units received so far.  */
+    private int received = 0;
+    /** The number of work units started so far.  */
+    private int started = 0;
+    /** The last work unit that we've been told to stop.  */
+    private int stopAt = 0;
+    /** The thread running a work unit, or null if none is running.  */
+    private Thread running = null;
+    /** Did we interrupt the thread running the current work unit?  */
+    private boolean interrupted = false;
+
+    // private constructor
+    private SearchWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     *  Public static factory method.  
+     *  @param host The host on which the coordinator is running.  
+     *  @param port The port on which the coordinator is listening.  
+     *  @return A worker that connects to the coordinator when it is run.  
+     */
+    public static SearchWorker createSearchWorker(String host, int port) {
+        return new SearchWorker(host,port);
+    }
+
+    /**
+     *  Connect to the coordinator and do work units until there are
+     *  no more, or the connection is lost.  
+     */
+    public void run() {
+        try (Socket socket = new Socket(host,port)) {
+            final ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.flush();
+            final ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            // send each sequence as soon as we find it
+            ResultSink sink = new ResultSink() {
+                public void accept(int[] sequence) {
+                    try {
+                        out.writeObject(sequence);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                public void done() { } };
+            // listen for STOP while we're working
+            final BlockingQueue<Object> units = new LinkedBlockingQueue<>();
+            Thread reader = new Thread(new Runnable() {
+                public void run() {
+                    read(in,units);
+                }
+            }, "search worker reader for " + host + ":" + port);
+            reader.setDaemon(true);
+            reader.start();
+            while (true) {
+                Object o = units.take();
+                if (o == END) break;
+                RangeWorkUnit unit = (RangeWorkUnit) o;
+                Object reply = null;
+                startUnit();
+                try {
+                    reply = unit.range(unit.getStart(),unit.getMax(),sink).call();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (RuntimeException e) {
+                    reply = e;
+                } finally {
+                    endUnit();
+                }
+                out.writeObject(reply);
+                out.flush();
+                out.reset();
+            }
+        } catch (IOException e) {
+            System.err.println("Search worker lost the connection to " + host + ":" + port + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     *  Read messages from the coordinator, putting work units on a
+     *  queue and stopping the current one when we're told to, until
+     *  the coordinator says there's nothing more to do or goes away.  
+     *  @param in The stream from the coordinator.  
+     *  @param units The queue on which we put the work units.  
+     */
+    private void read(ObjectInputStream in, BlockingQueue<Object> units) {
+        try {
+            while (true) {
+                Object o = in.readObject();
+                if (o == null) break;
+                if (STOP.equals(o)) {
+                    stop();
+                    continue;
+                }
+                synchronized (this) {
+                    received++;
+                }
+                units.put(o);
+            }
+        } catch (EOFException e) {
+            // the coordinator has gone away, so there's nothing more to do
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Search worker lost the connection to " + host + ":" + port + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stop();
+            units.offer(END);
+        }
+    }
+
+    /**
+     *  Record that we're starting a work unit on this thread, and stop
+     *  it straight away if we've already been told to.  
+     */
+    private synchronized void startUnit() {
+        started++;
+        running = Thread.currentThread();
+        if (stopAt == started) {
+            interrupted = true;
+            running.interrupt();
+        }
+    }
+
+    /**
+     *  Record that we've finished a work unit, and clear the interrupt
+     *  if it was us who stopped it.  
+     */
+    private synchronized void endUnit() {
+        running = null;
+        if (interrupted) Thread.interrupted();
+        interrupted = false;
+    }
+
+    /**
+     *  Stop the last work unit that we've received, if it's running, 
+     *  or as soon as it starts.  
+     */
+    private synchronized void stop() {
+        stopAt = received;
+        if (running != null && started == stopAt && !interrupted) {
+            interrupted = true;
+            running.interrupt();
+        }
+    }
+
+    /**
+     *  Output a String representation of this.  
+     *  @return A String containing the address of the coordinator.  
+     */
+    public String toString() {
+        return "search worker for " + host + ":" + port;
+    }
+
+    /**
+     *  Do work for a coordinator until it has nothing more to do.  
+     *  @param args The host and port of the coordinator, and optionally
+     *  the number of threads to use (by default, and at most, one for
+     *  each processor).  
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: java SearchWorker host port [threads]");
+            return;
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int max = GeneralThreadService.INSTANCE.NUMBER_OF_THREADS;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : max;
+        if (threads > max) {
+            // the rest would wait in the queue until the search was over
+            System.err.println("There are only " + max + " search threads, so using " + max + " workers instead of " + threads + ".");
+            threads = max;
+        }
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) workers.add(GeneralThreadService.INSTANCE.submit(GeneralThreadService.JobType.SEARCH,createSearchWorker(host,port)));
+            for (Future<?> f : workers) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        System.exit(0);
+    }
+
+} // end of class SearchWorker
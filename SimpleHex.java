@@ -169,6 +169,15 @@ public class SimpleHex implements Hex, Serializable {
         return this;
     }
 
+    /**
+     *  Do nothing: this is already simple.  
+     *  @param simple Ignored.  
+     *  @return This.  
+     */
+    public SimpleHex createSimpleHex(Map<Rhomb,SimpleRhomb> simple) {
+        return this;
+    }
+
     /**
      *  Determine if this represents a hexagon--i.e., if the three rhombs all touch one another.
      *  @return true if the three rhombs all touch one another.  
@@ -40,7 +40,11 @@ public class SimpleRhomb implements Rhomb, Serializable {
     public final int type;
     /** Orientation.  */
     public final int angle;
-    /** The four vertices, represented as integer vectors of length {@link Point#N()}-1.  */
+    /**
+     * The four vertices, represented as integer vectors of length {@link Point#N()}-1.  
+     * They are interned (see {@link Point#intern()}), so the rhombs in 
+     * a patch share their vertices.  
+     */
     private Point[] vertices = new Point[4];
     /** The scale for drawing.  */
     private double scale = RhombDisplay.SCALE;
@@ -70,6 +74,7 @@ public class SimpleRhomb implements Rhomb, Serializable {
         stream.defaultReadObject();
         p = (Point)          stream.readObject();
         vertices = (Point[]) stream.readObject();
+        for (int i = 0; i < 4; i++) vertices[i] = vertices[i].intern();
         rhomb = null;
         setRhomb();
     }
@@ -93,10 +98,10 @@ public class SimpleRhomb implements Rhomb, Serializable {
         this.v2 = v2;
         this.type = type;
         this.angle = angle;
-        vertices[0] = p;
-        vertices[1] = p.plus(v2);
-        vertices[2] = vertices[1].plus(v1);
-        vertices[3] = p.plus(v1);
+        vertices[0] = p.intern();
+        vertices[1] = p.plus(v2).intern();
+        vertices[2] = vertices[1].plus(v1).intern();
+        vertices[3] = p.plus(v1).intern();
         // now make the rhomb
         setRhomb();
     }
@@ -211,7 +216,7 @@ public class SimpleRhomb implements Rhomb, Serializable {
      */
     public void shift(Point vector) {
         p = p.plus(vector);
-        for (int i = 0; i < 4; i++) vertices[i] = vertices[i].plus(vector);
+        for (int i = 0; i < 4; i++) vertices[i] = vertices[i].plus(vector).intern();
         setRhomb();
     }
 
@@ -424,8 +429,10 @@ public class SimpleRhomb implements Rhomb, Serializable {
      * 
      */
     public SimpleRhomb transform(int rot, Point move){
-    	SimpleRhomb r = rotate(rot).translate(move);
-    	return r;
+        // rotate and translate the corner in one go
+        Point newP = p.rotate(rot,move);
+        int newAngle = (angle + rot)%(2*Point.N());
+        return new SimpleRhomb(newP, v1.rotate(rot), v2.rotate(rot), type, newAngle);
     }
 
     /**
@@ -481,8 +488,27 @@ public class SimpleRhomb implements Rhomb, Serializable {
      * rule specified by edge.  
      */
     public SimplePolygon2D outline(Point[] infl, int[] edge) {
-        List<Point2D> output = new ArrayList<>();
-        for (Point p : supertile(infl,edge)) output.add(p.getPoint2D().scale(scale));
+        // the same walk as supertile, but we only make the Point2Ds
+        int even = Point.N()+1-2*type;
+        int n = edge.length;
+        List<Point2D> output = new ArrayList<>(4*n);
+        Point.Accumulator current = Point.createAccumulator().set(vertices[0].multiply(infl));
+        for (int i = 0; i < n; i++) {
+            output.add(current.getPoint2D().scale(scale));
+            current.addUnit(this.angle+edge[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            output.add(current.getPoint2D().scale(scale));
+            current.addUnit(this.angle-even+edge[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            output.add(current.getPoint2D().scale(scale));
+            current.addUnit(this.angle+Point.N()+edge[n-i-1]);
+        }
+        for (int i = 0; i < n; i++) {
+            output.add(current.getPoint2D().scale(scale));
+            current.addUnit(this.angle-even+Point.N()+edge[n-i-1]);
+        }
         return new SimplePolygon2D(output);
     }
 
@@ -22,6 +22,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.Map;
 import java.util.AbstractMap;
 import java.awt.Color;
@@ -263,8 +266,14 @@ public class SubstitutionEditor extends JFrame {
                     fDialog.setDirectory("./images");
                     fDialog.setVisible(true);
                     if (fDialog.getDirectory()==null||fDialog.getFile()==null) return;
-                    String path = fDialog.getDirectory() + fDialog.getFile() + ((fDialog.getFile().endsWith(".ps")) ? "" : ".ps");
-                    FileManager.postscriptDump(path,temp.patch);
+                    final String path = fDialog.getDirectory() + fDialog.getFile() + ((fDialog.getFile().endsWith(".ps")) ? "" : ".ps");
+                    // copy the patch here, and write the file in the background
+                    final PatchDisplay.Snapshot copy = temp.patch.snapshot();
+                    inBackground(new Runnable() {
+                        public void run() {
+                            FileManager.postscriptDump(path,copy);
+                        }
+                    });
             }
         });
         file.add(saveImage);
@@ -313,13 +322,23 @@ public class SubstitutionEditor extends JFrame {
 
         quit = new JMenuItem(new AbstractAction("Quit") {
             public void actionPerformed( ActionEvent event ) {
+                Future<?> saving = null;
                 switch (savePrompt()) {
-                    case    JOptionPane.YES_OPTION:  save(temp);
+                    case    JOptionPane.YES_OPTION:  saving = save(temp);
                                                      break;
                     case     JOptionPane.NO_OPTION:  break;
                     case JOptionPane.CANCEL_OPTION:  return;
                     default:  return;
                 }
+                // I/O threads may not keep the program running, so
+                // finish saving before we close the last window
+                try {
+                    if (saving != null) saving.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
                 EventQueue.invokeLater(new Runnable() {
                     public void run() {
                         try {
@@ -442,16 +461,41 @@ public class SubstitutionEditor extends JFrame {
     /**
      * Static method for producing a pop-up prompt to save the given 
      * SubstitutionEditor.  
+     * The editor is copied straight away, but the file is written 
+     * in the background, so the user can carry on editing.  
      * @param editor The current editor, which the user might wish 
      * to save.  
+     * @return A Future that tells us when the file has been written, 
+     * or null if there is nothing to wait for.  
      */
-    public static void save(SubstitutionEditor editor) {
+    public static Future<?> save(SubstitutionEditor editor) {
         FileDialog fDialog = new FileDialog(editor, "Save", FileDialog.SAVE);
         fDialog.setDirectory("./saves");
         fDialog.setVisible(true);
-        if (fDialog.getDirectory()==null||fDialog.getFile()==null) return;
-        String path = fDialog.getDirectory() + fDialog.getFile() + ((fDialog.getFile().endsWith(".sub")) ? "" : ".sub");
-        FileManager.saveSubstitutionEditor(path,editor.dump());
+        if (fDialog.getDirectory()==null||fDialog.getFile()==null) return null;
+        final String path = fDialog.getDirectory() + fDialog.getFile() + ((fDialog.getFile().endsWith(".sub")) ? "" : ".sub");
+        final byte[] snapshot = FileManager.snapshot(editor.dump());
+        if (snapshot == null) return null;
+        return inBackground(new Runnable() {
+            public void run() {
+                FileManager.saveSubstitutionEditor(path,snapshot);
+            }
+        });
+    }
+
+    /**
+     * Run a job that writes a file on the I/O threads of 
+     * {@link GeneralThreadService}, so that it doesn't hold up the 
+     * event dispatch thread or the searches.  If too many files are 
+     * already being written, run it here instead.  
+     * @param job The job that writes the file.  
+     * @return A Future that tells us when the job is done, or null 
+     * if it has already been done.  
+     */
+    private static Future<?> inBackground(Runnable job) {
+        Future<?> output = GeneralThreadService.INSTANCE.trySubmit(GeneralThreadService.JobType.IO,Executors.callable(job));
+        if (output == null) job.run();
+        return output;
     }
 
     /**
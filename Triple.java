@@ -267,6 +267,15 @@ public class Triple implements Hex, Serializable {
         return new SimpleHex(r0,r1,r2);
     }
 
+    /**
+     * Create a simplified version of this.  
+     * @param simple The simplified version of each Join in this.  
+     * @return A SimpleHex made of the simplified Joins.  
+     */
+    public SimpleHex createSimpleHex(Map<Rhomb,SimpleRhomb> simple) {
+        return new SimpleHex(simple.get(j[0]),simple.get(j[1]),simple.get(j[2]));
+    }
+
     /**
      *  Suppose this Triple has just been flipped.  
      *  Create a list of new Triples that are created as a result.  
@@ -11,5 +11,18 @@ public interface WorkUnit extends Callable<Result>, Serializable
      *  The {@link Result} that you get when you call this work unit.  
      */
     public Result call();
+
+    /**
+     *  Should this work unit stop before it has finished?  
+     *  Work units that take a long time should check this regularly, 
+     *  and if it's true, return a {@link Result} that says how far 
+     *  they got (see {@link Result#getProcessed()}).  
+     *  @return true if the thread running this has been interrupted.  
+     */
+    public default boolean stopRequested()
+    {
+        return Thread.currentThread().isInterrupted();
+    }
+
     public String toString();
 }
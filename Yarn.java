@@ -1,4 +1,5 @@
 import java.util.Deque;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
@@ -20,6 +21,12 @@ import java.util.Arrays;
  *  Each such pseudoline corresponds to a connected path of rhombs, all edges parallel to a given edge.  
  *  Each Yarn begins and ends at a {@link Terminus}.  
  *  The intersection of two Yarns is a {@link Join}.  
+ *  The Yarns that cross this one, and the Joins, are stored in a
+ *  {@link YarnArrangement} shared by all of the Yarns in the same
+ *  pattern, so finding the position of one Yarn on another takes
+ *  constant time.  
+ *  In a save file, a Yarn still looks as if it kept its own lists of
+ *  crossings and Joins, so old files can be read.  
  */
 public class Yarn implements Comparable<Yarn>, Serializable {
 
@@ -30,22 +37,113 @@ public class Yarn implements Comparable<Yarn>, Serializable {
     private Terminus start;
     /**  The Terminus where this Yarn ends.  Should have an odd angle if N is even.  */
     private Terminus end;
-    /**  A List of all Yarns that cross this one.  */
-    private LinkedList<Yarn> cross;
-    /**  A List of all crossings.  */
-    private LinkedList<Join> joins;
     /**
      *  The image of this Yarn under a 180-degree rotation of the whole 
      *  configuration, if there is such a symmetry.  Otherwise this is null.  
      */
     private Yarn opposite = null;
+    /**  The arrangement in which the crossings of this Yarn are stored.  */
+    private transient YarnArrangement arrangement;
+    /**  The id of this Yarn in its arrangement.  */
+    private transient int id;
+    /**  The Yarns that cross this one, if we've just been read from a file.  */
+    private transient LinkedList<Yarn> savedCross;
+    /**  The Joins on this Yarn, if we've just been read from a file.  */
+    private transient LinkedList<Join> savedJoins;
+
+    /**
+     *  The fields that we save.  These are the fields that a Yarn had 
+     *  when it kept its own lists of crossings and Joins.  
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("start", Terminus.class),
+        new ObjectStreamField("end", Terminus.class),
+        new ObjectStreamField("cross", LinkedList.class),
+        new ObjectStreamField("joins", LinkedList.class),
+        new ObjectStreamField("opposite", Yarn.class)
+    };
 
     /**  Private constructor.  */
     private Yarn(Terminus s, Terminus e) {
         start = s;
         end = e;
-        cross = new LinkedList<>();
-        joins = new LinkedList<>();
+    }
+
+    /** Method for saving and restoring.  */
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+        ObjectOutputStream.PutField fields = stream.putFields();
+        fields.put("start",start);
+        fields.put("end",end);
+        fields.put("cross",new LinkedList<Yarn>(cross()));
+        LinkedList<Join> j = new LinkedList<>();
+        for (Join jj : joins()) j.add(jj);
+        fields.put("joins",j);
+        fields.put("opposite",opposite);
+        stream.writeFields();
+    }
+
+    /** Method for saving and restoring.  */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = stream.readFields();
+        start = (Terminus) fields.get("start",null);
+        end = (Terminus) fields.get("end",null);
+        savedCross = (LinkedList<Yarn>) fields.get("cross",null);
+        savedJoins = (LinkedList<Join>) fields.get("joins",null);
+        opposite = (Yarn) fields.get("opposite",null);
+        if (savedCross==null) savedCross = new LinkedList<>();
+        if (savedJoins==null) savedJoins = new LinkedList<>();
+    }
+
+    /**
+     *  Join an arrangement.  
+     *  @param a The arrangement in which the crossings of this are stored.  
+     *  @param i The id of this in a.  
+     */
+    void attach(YarnArrangement a, int i) {
+        arrangement = a;
+        id = i;
+    }
+
+    /**
+     *  Getter method.  
+     *  If this Yarn has just been read from a file, we rebuild the
+     *  arrangement from the lists of crossings that were saved with it.  
+     *  If this Yarn doesn't belong to an arrangement yet, it gets one
+     *  of its own.  
+     *  @return The arrangement in which the crossings of this are stored.  
+     */
+    YarnArrangement arrangement() {
+        if (arrangement==null) {
+            if (savedCross==null) YarnArrangement.createYarnArrangement(new Yarn[] {this});
+            else YarnArrangement.restore(this);
+        }
+        return arrangement;
+    }
+
+    /**
+     *  Getter method.  
+     *  @return The id of this in its arrangement.  
+     */
+    public int getId() {
+        arrangement();
+        return id;
+    }
+
+    /**  The Yarns that crossed this one when it was saved, or null if we've got an arrangement.  */
+    List<Yarn> savedCross() {
+        return savedCross;
+    }
+
+    /**  The Joins on this Yarn when it was saved, or null if we've got an arrangement.  */
+    List<Join> savedJoins() {
+        return savedJoins;
+    }
+
+    /**  Discard the lists that were saved with this, once they're in the arrangement.  */
+    void forgetSaved() {
+        savedCross = null;
+        savedJoins = null;
     }
 
     /**
@@ -62,8 +160,9 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return The first intersection with another Yarn, determined by proximity to the starting Terminus.  null if there are no Joins.  
      */
     public Join firstJoin() {
-        if (joins.isEmpty()) return null;
-        return joins.get(0);
+        YarnArrangement a = arrangement();
+        if (a.joinCount(id)==0) return null;
+        return a.getJoin(id,0);
     }
 
     /**
@@ -71,8 +170,9 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return The last intersection with another Yarn, determined by proximity to the starting Terminus.  null if there are no Joins.  
      */
     public Join lastJoin() {
-        if (joins.isEmpty()) return null;
-        return joins.get(joins.size()-1);
+        YarnArrangement a = arrangement();
+        if (a.joinCount(id)==0) return null;
+        return a.getJoin(id,a.joinCount(id)-1);
     }
 
     /**
@@ -80,7 +180,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param y The Yarn we add.  
      */
     public void add(Yarn y) {
-        cross.add(y);
+        arrangement().addLast(id,y);
     }
 
     /**
@@ -88,7 +188,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param y The Yarn we add.  
      */
     public void addFirst(Yarn y) {
-        cross.addFirst(y);
+        arrangement().addFirst(id,y);
     }
 
     /**
@@ -96,7 +196,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param y The Yarn we add.  
      */
     public void addLast(Yarn y) {
-        cross.addLast(y);
+        arrangement().addLast(id,y);
     }
 
     /**
@@ -104,7 +204,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param j The Join we add.  
      */
     public void add(Join j) {
-        joins.add(j);
+        arrangement().addLastJoin(id,j);
     }
 
     /**
@@ -112,7 +212,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param j The Join we add.  
      */
     public void addFirst(Join j) {
-        joins.addFirst(j);
+        arrangement().addFirstJoin(id,j);
     }
 
     /**
@@ -120,7 +220,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param j The Join we add.  
      */
     public void addLast(Join j) {
-        joins.addLast(j);
+        arrangement().addLastJoin(id,j);
     }
 
     /**
@@ -129,8 +229,8 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param j The Join we add.  
      */
     public void add(Yarn y, Join j) {
-        cross.add(y);
-        joins.add(j);
+        add(y);
+        add(j);
     }
 
     /**
@@ -138,7 +238,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param y The Yarn we remove.  
      */
     public void remove(Yarn y) {
-        cross.remove(y);
+        arrangement().remove(id,y);
     }
 
     /**
@@ -146,23 +246,25 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param j The Join we remove.  
      */
     public void remove(Join j) {
-        joins.remove(j);
+        arrangement().removeJoin(id,j);
     }
 
     /**
      *  Remove the first Yarn that this one crosses, along with the corresponding Join.  
      */
     public void removeFirst() {
-        joins.removeFirst();
-        cross.removeFirst();
+        YarnArrangement a = arrangement();
+        a.removeFirstJoin(id);
+        a.removeFirst(id);
     }
 
     /**
      *  Remove the last Yarn that this one crosses, along with the corresponding Join.  
      */
     public void removeLast() {
-        joins.removeLast();
-        cross.removeLast();
+        YarnArrangement a = arrangement();
+        a.removeLastJoin(id);
+        a.removeLast(id);
     }
 
     /**
@@ -194,20 +296,21 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      */
     public void symmetrize() {
         if (opposite==null) return;
-        @SuppressWarnings("unchecked")
-        List<Yarn> c1 = (List<Yarn>)this.cross.clone();
-        @SuppressWarnings("unchecked")
-        List<Yarn> c2 = (List<Yarn>)opposite.cross.clone();
-        if (c1.isEmpty()) for (Yarn y : c2) addFirst(y.getOpposite());
+        List<Yarn> c2 = new ArrayList<>(opposite.cross());
+        boolean empty = (crossCount()==0);
+        // the Yarns that crossed this before we started
+        boolean[] c1 = new boolean[c2.size()];
+        for (int i = 0; i < c2.size(); i++) c1[i] = crosses(c2.get(i).getOpposite());
+        if (empty) for (Yarn y : c2) addFirst(y.getOpposite());
         for (int i = 0; i < c2.size(); i++) {
-            if (c1.contains(c2.get(i).getOpposite())) {
+            if (c1[i]) {
                 // add everything before this to c1
                 for (int j = i-1; j > -1; j--) addLast(c2.get(j).getOpposite());
                 break;
             }
         }
         for (int i = c2.size()-1; i > -1; i--) {
-            if (c1.contains(c2.get(i).getOpposite())) {
+            if (c1[i]) {
                 // add everything after this to c1
                 for (int j = i+1; j < c2.size(); j++) addFirst(c2.get(j).getOpposite());
                 break;
@@ -226,7 +329,8 @@ public class Yarn implements Comparable<Yarn>, Serializable {
         boolean f2 = false;
         Terminus t1 = null;
         Terminus t2 = null;
-        Yarn y2 = cross.get(joins.indexOf(j));
+        YarnArrangement a = arrangement();
+        Yarn y2 = a.get(id,a.indexOfJoin(id,j));
         if (j.equals(lastJoin())) {
             t1 = end;
             removeLast();
@@ -311,9 +415,10 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return true if this hits y1 followed immediately by y2.  
      */
     public boolean hits(Yarn y1, Yarn y2) {
-        int i = cross.indexOf(y1);
-        if (i<0||i==cross.size()-1) return false;
-        return cross.get(i+1).equals(y2);
+        YarnArrangement a = arrangement();
+        int i = a.indexOf(id,y1);
+        if (i<0||i==a.size(id)-1) return false;
+        return a.get(id,i+1).equals(y2);
     }
 
     /**
@@ -324,12 +429,12 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @see #hits  
      */
     public void swap(Yarn y1, Yarn y2) {
-        int index1 = cross.indexOf(y1);
-        int index2 = cross.indexOf(y2);
+        YarnArrangement a = arrangement();
+        int index1 = a.indexOf(id,y1);
+        int index2 = a.indexOf(id,y2);
         if (index1<0||index2<0) throw new IllegalArgumentException("Can't swap Yarns " + y1 + " and " + y2 + " because one of them doesn't cross " + this + ".");
         if (Math.abs(index1-index2)!=1) throw new IllegalArgumentException("Can't swap Yarns that don't appear in consecutive positions.");
-        Collections.swap(cross,index1,index2);
-        Collections.swap(joins,index1,index2);
+        a.swap(id,index1,index2);
     }
 
     /**
@@ -340,9 +445,10 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  followed immediately by y1.  
      */
     public boolean consecutive(Yarn y1, Yarn y2) {
-        int index1 = cross.indexOf(y1);
+        YarnArrangement a = arrangement();
+        int index1 = a.indexOf(id,y1);
         if (index1<0) return false;
-        int index2 = cross.indexOf(y2);
+        int index2 = a.indexOf(id,y2);
         if (index2<0) return false;
         return (Math.abs(index1-index2)==1);
     }
@@ -351,7 +457,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return The number of other Yarns this crosses.  
      */
     public int crossCount() {
-        return cross.size();
+        return arrangement().size(id);
     }
 
     /**
@@ -360,7 +466,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return true if other crosses this.  
      */
     public boolean crosses(Yarn other) {
-        return cross.contains(other);
+        return arrangement().indexOf(id,other) >= 0;
     }
 
     /**
@@ -368,7 +474,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return A list of all the Yarns that cross this one.  
      */
     public List<Yarn> getCross() {
-        return cross;
+        return cross();
     }
 
     /**
@@ -398,8 +504,8 @@ public class Yarn implements Comparable<Yarn>, Serializable {
         int s2 = other.start.getIndex();
         int e1 = this.end.getIndex();
         int e2 = other.end.getIndex();
-        int cr = (((s1-s2)*(e1-s2)))*(((e1-e2)*(s1-e2)));
-        return (cr < 0) ? -1 : ((cr > 0) ? 1 : 0);
+        // multiply signs rather than differences, so long boundaries don't overflow
+        return Integer.signum(s1-s2)*Integer.signum(e1-s2)*Integer.signum(e1-e2)*Integer.signum(s1-e2);
     }
 
     /**
@@ -428,7 +534,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
     public boolean valid() {
         int thisIndex = Math.min(this.start.getIndex(),this.end.getIndex());
         Terminus thisFirst = (this.start.getIndex()==thisIndex) ? this.start : this.end;
-        for (Yarn y : cross) {
+        for (Yarn y : cross()) {
             int thatIndex = Math.min(y.start.getIndex(),y.end.getIndex());
             Terminus thatFirst = (y.start.getIndex()==thatIndex) ? y.start : y.end;
             int difference = (thisIndex>thatIndex) ? thisFirst.getAngle()-thatFirst.getAngle() : thatFirst.getAngle()-thisFirst.getAngle();
@@ -445,9 +551,10 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return The Join between other and this.  
      */
     public Join joinWith(Yarn other) {
-        int index = cross.indexOf(other);
+        YarnArrangement a = arrangement();
+        int index = a.indexOf(id,other);
         if (index < 0) return null;//throw new IllegalArgumentException("Looking for the Join of two Yarns that don't cross.");
-        return joins.get(index);
+        return a.getJoin(id,index);
     }
 
     /**
@@ -460,13 +567,14 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  with y1.  Return null if there is not such Yarn.  
      */
     public Yarn nextYarn(Yarn y1, Yarn y2) {
-        int index1 = cross.indexOf(y1);
-        int index2 = cross.indexOf(y2);
+        YarnArrangement a = arrangement();
+        int index1 = a.indexOf(id,y1);
+        int index2 = a.indexOf(id,y2);
         if (index1 < 0||index2 < 0) throw new IllegalArgumentException("Looking for the next Yarn, but the given two aren't on this one.");
         if (Math.abs(index1-index2)!=1) throw new IllegalArgumentException("Looking for the next Yarn, but these two aren't consecutive.");
         int newIndex = 2*index1-index2;
-        if (newIndex>=cross.size()||newIndex<0) return null;
-        return cross.get(newIndex);
+        if (newIndex>=a.size(id)||newIndex<0) return null;
+        return a.get(id,newIndex);
     }
 
     /**
@@ -476,34 +584,37 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @param y0 One of three Yarns.  
      *  @param y1 One of three Yarns.  
      *  @param y2 One of three Yarns.  
-     *  @return All Triples that would be created or destroyed by flipping the Triple on y0, y1, and y2.
+     *  @return All Triples that would be created or destroyed by flipping the Triple on y0, y1, and y2.  
      */
     public static List<Hex> surroundingTriples(Yarn y0, Yarn y1, Yarn y2) {
         List<Hex> output = new LinkedList<>();
-        int y01 = y0.cross.indexOf(y1);
-        int y02 = y0.cross.indexOf(y2);
-        int y10 = y1.cross.indexOf(y0);
-        int y12 = y1.cross.indexOf(y2);
-        int y20 = y2.cross.indexOf(y0);
-        int y21 = y2.cross.indexOf(y1);
+        List<Yarn> c0 = y0.cross();
+        List<Yarn> c1 = y1.cross();
+        List<Yarn> c2 = y2.cross();
+        int y01 = c0.indexOf(y1);
+        int y02 = c0.indexOf(y2);
+        int y10 = c1.indexOf(y0);
+        int y12 = c1.indexOf(y2);
+        int y20 = c2.indexOf(y0);
+        int y21 = c2.indexOf(y1);
         int i = y01+y01-y02;
         int j = y10+y10-y12;
-        if (i>=0&&i<y0.cross.size()&&j>=0&&j<y1.cross.size()&&y0.cross.get(i).equals(y1.cross.get(j))) output.add(Triple.createTriple(y0.cross.get(i),y0,y1));
+        if (i>=0&&i<c0.size()&&j>=0&&j<c1.size()&&c0.get(i).equals(c1.get(j))) output.add(Triple.createTriple(c0.get(i),y0,y1));
         i = y02+y02-y01;
         j = y12+y12-y10;
-        if (i>=0&&i<y0.cross.size()&&j>=0&&j<y1.cross.size()&&y0.cross.get(i).equals(y1.cross.get(j))) output.add(Triple.createTriple(y0.cross.get(i),y0,y1));
+        if (i>=0&&i<c0.size()&&j>=0&&j<c1.size()&&c0.get(i).equals(c1.get(j))) output.add(Triple.createTriple(c0.get(i),y0,y1));
         i = y21+y21-y20;
         j = y12+y12-y10;
-        if (i>=0&&i<y2.cross.size()&&j>=0&&j<y1.cross.size()&&y2.cross.get(i).equals(y1.cross.get(j))) output.add(Triple.createTriple(y2.cross.get(i),y1,y2));
+        if (i>=0&&i<c2.size()&&j>=0&&j<c1.size()&&c2.get(i).equals(c1.get(j))) output.add(Triple.createTriple(c2.get(i),y1,y2));
         i = y20+y20-y21;
         j = y10+y10-y12;
-        if (i>=0&&i<y2.cross.size()&&j>=0&&j<y1.cross.size()&&y2.cross.get(i).equals(y1.cross.get(j))) output.add(Triple.createTriple(y2.cross.get(i),y1,y2));
+        if (i>=0&&i<c2.size()&&j>=0&&j<c1.size()&&c2.get(i).equals(c1.get(j))) output.add(Triple.createTriple(c2.get(i),y1,y2));
         i = y20+y20-y21;
         j = y02+y02-y01;
-        if (i>=0&&i<y2.cross.size()&&j>=0&&j<y0.cross.size()&&y2.cross.get(i).equals(y0.cross.get(j))) output.add(Triple.createTriple(y2.cross.get(i),y0,y2));
+        if (i>=0&&i<c2.size()&&j>=0&&j<c0.size()&&c2.get(i).equals(c0.get(j))) output.add(Triple.createTriple(c2.get(i),y0,y2));
         i = y21+y21-y20;
         j = y01+y01-y02;
-        if (i>=0&&i<y2.cross.size()&&j>=0&&j<y0.cross.size()&&y2.cross.get(i).equals(y0.cross.get(j))) output.add(Triple.createTriple(y2.cross.get(i),y0,y2));
+        if (i>=0&&i<c2.size()&&j>=0&&j<c0.size()&&c2.get(i).equals(c0.get(j))) output.add(Triple.createTriple(c2.get(i),y0,y2));
         return output;
     }
 
@@ -522,7 +633,7 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      */
     public String crossString() {
         String output = "";
-        for (Yarn y : cross) {
+        for (Yarn y : cross()) {
             output += "  " + y + "\n";
         }
         return output;
@@ -532,14 +643,64 @@ public class Yarn implements Comparable<Yarn>, Serializable {
      *  @return A List of all the Yarns that cross this one.  
      */
     public List<Yarn> cross() {
-        return cross;
+        return new CrossView();
     }
 
     /**
      *  @return An Iterable of all the Joins on this Yarn.  
      */
     public Iterable<Join> joins() {
-        return joins;
+        return new JoinView();
     }
 
+    /**
+     *  A read-only List of the Yarns that cross this one, backed by the
+     *  arrangement.  
+     */
+    private class CrossView extends AbstractList<Yarn> {
+
+        /** The arrangement.  */
+        private final YarnArrangement a = arrangement();
+
+        public Yarn get(int i) {
+            return a.get(id,i);
+        }
+
+        public int size() {
+            return a.size(id);
+        }
+
+        public int indexOf(Object o) {
+            return (o instanceof Yarn) ? a.indexOf(id,(Yarn) o) : -1;
+        }
+
+        public int lastIndexOf(Object o) {
+            return indexOf(o);
+        }
+
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+    } // end of class CrossView
+
+    /**
+     *  A read-only List of the Joins on this Yarn, backed by the
+     *  arrangement.  
+     */
+    private class JoinView extends AbstractList<Join> {
+
+        /** The arrangement.  */
+        private final YarnArrangement a = arrangement();
+
+        public Join get(int i) {
+            return a.getJoin(id,i);
+        }
+
+        public int size() {
+            return a.joinCount(id);
+        }
+
+    } // end of class JoinView
+
 } // end of class Yarn
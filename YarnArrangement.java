@@ -0,0 +1,379 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ *  The crossings of all the {@link Yarn}s in a pseudoline arrangement,
+ *  stored in a few flat arrays.  
+ *  Each Yarn has an id, which is its index in the array of Yarns that
+ *  we were created with.  The Yarns that cross the Yarn with id y are
+ *  stored, in order, as ids in a window of {@link #order} belonging to y,
+ *  and the {@link Join}s in the same window of {@link #joins}.  
+ *  Each window is twice as long as the number of Yarns, and we start
+ *  filling it from the middle, so we can add to either end.  
+ *  We also keep an inverse table, {@link #position}, telling us where
+ *  each Yarn appears in the window of each other Yarn, so finding the
+ *  position of one Yarn on another takes constant time.  
+ *  A Yarn is a thin view of its row of these arrays.  
+ */
+public class YarnArrangement {
+
+    /** The Yarns, indexed by id.  */
+    private final Yarn[] yarns;
+    /** The number of Yarns.  */
+    private final int size;
+    /** The length of the window belonging to each Yarn.  */
+    private final int width;
+    /** The ids of the Yarns crossing each Yarn, in order.  */
+    private final int[] order;
+    /**
+     *  The slot in {@link #order} at which the Yarn with id z crosses the
+     *  Yarn with id y is stored in entry y*size+z, or -1 if they don't cross.  
+     */
+    private final int[] position;
+    /** The first occupied slot of each window in {@link #order}.  */
+    private final int[] head;
+    /** The slot after the last occupied slot of each window in {@link #order}.  */
+    private final int[] tail;
+    /** The Joins on each Yarn, in order.  */
+    private final Join[] joins;
+    /** The first occupied slot of each window in {@link #joins}.  */
+    private final int[] joinHead;
+    /** The slot after the last occupied slot of each window in {@link #joins}.  */
+    private final int[] joinTail;
+
+    // private constructor
+    private YarnArrangement(Yarn[] yarns) {
+        this.yarns = yarns.clone();
+        this.size = yarns.length;
+        this.width = 2*size;
+        this.order = new int[size*width];
+        this.position = new int[size*size];
+        this.head = new int[size];
+        this.tail = new int[size];
+        this.joins = new Join[size*width];
+        this.joinHead = new int[size];
+        this.joinTail = new int[size];
+        Arrays.fill(position,-1);
+        for (int y = 0; y < size; y++) {
+            head[y] = y*width + size;
+            tail[y] = head[y];
+            joinHead[y] = head[y];
+            joinTail[y] = head[y];
+            this.yarns[y].attach(this,y);
+        }
+    }
+
+    /**
+     *  Public static factory method.  
+     *  Each Yarn starts out crossing nothing, and gets its index in
+     *  yarns as its id.  
+     *  @param yarns The Yarns in the arrangement.  
+     *  @return An arrangement of yarns with no crossings.  
+     */
+    public static YarnArrangement createYarnArrangement(Yarn[] yarns) {
+        return new YarnArrangement(yarns);
+    }
+
+    /**
+     *  Rebuild an arrangement from Yarns that have been read from an old
+     *  save file, in which each Yarn kept its own lists of crossings.  
+     *  We copy those lists into a new arrangement.  If the Yarns already
+     *  have an arrangement, we do nothing.  
+     *  @param yarns The Yarns that were read from a file.  Every Yarn
+     *  that crosses one of them must be among them.  
+     */
+    static void restore(Yarn[] yarns) {
+        if (yarns.length==0 || yarns[0].savedCross()==null) return;
+        YarnArrangement a = new YarnArrangement(yarns);
+        for (int y = 0; y < a.size; y++) {
+            for (Yarn z : yarns[y].savedCross()) a.addLast(y,z);
+            for (Join j : yarns[y].savedJoins()) a.addLastJoin(y,j);
+        }
+        for (Yarn y : yarns) y.forgetSaved();
+    }
+
+    /**
+     *  Rebuild an arrangement from a Yarn that has been read from an old
+     *  save file, and all the Yarns that can be reached from it through
+     *  the lists of crossings saved with them.  
+     *  @param start A Yarn that was read from a file.  
+     */
+    static void restore(Yarn start) {
+        Map<Yarn,Boolean> seen = new IdentityHashMap<>();
+        List<Yarn> found = new ArrayList<>();
+        Deque<Yarn> toDo = new ArrayDeque<>();
+        toDo.add(start);
+        seen.put(start,true);
+        while (!toDo.isEmpty()) {
+            Yarn y = toDo.poll();
+            found.add(y);
+            for (Yarn z : y.savedCross()) {
+                if (seen.put(z,true)==null) toDo.add(z);
+            }
+        }
+        restore(found.toArray(new Yarn[0]));
+    }
+
+    /**
+     *  Find the id of a Yarn.  
+     *  @param z A Yarn.  
+     *  @return The id of z, or -1 if it isn't in this arrangement.  
+     */
+    private int idOf(Yarn z) {
+        return (z.arrangement()==this) ? z.getId() : -1;
+    }
+
+    /**
+     *  The number of Yarns that cross a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @return The number of Yarns crossing the Yarn with id y.  
+     */
+    int size(int y) {
+        return tail[y] - head[y];
+    }
+
+    /**
+     *  Find one of the Yarns that cross a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @param i A position on the Yarn with id y.  
+     *  @return The Yarn that crosses the Yarn with id y in position i.  
+     */
+    Yarn get(int y, int i) {
+        if (i < 0 || i >= size(y)) throw new IndexOutOfBoundsException("Position " + i + " on a Yarn with " + size(y) + " crossings.");
+        return yarns[order[head[y]+i]];
+    }
+
+    /**
+     *  Find the position of one Yarn on another.  
+     *  @param y The id of a Yarn.  
+     *  @param z Another Yarn.  
+     *  @return The position at which z crosses the Yarn with id y, or -1 if it doesn't.  
+     */
+    int indexOf(int y, Yarn z) {
+        int k = idOf(z);
+        if (k < 0) return -1;
+        int p = position[y*size+k];
+        return (p < 0) ? -1 : p - head[y];
+    }
+
+    /**
+     *  Add a Yarn to the beginning of the list of Yarns crossing a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @param z The Yarn that we add.  
+     */
+    void addFirst(int y, Yarn z) {
+        int k = check(y,z);
+        if (head[y]==y*width) recentre(y);
+        head[y]--;
+        order[head[y]] = k;
+        position[y*size+k] = head[y];
+    }
+
+    /**
+     *  Add a Yarn to the end of the list of Yarns crossing a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @param z The Yarn that we add.  
+     */
+    void addLast(int y, Yarn z) {
+        int k = check(y,z);
+        if (tail[y]==(y+1)*width) recentre(y);
+        order[tail[y]] = k;
+        position[y*size+k] = tail[y];
+        tail[y]++;
+    }
+
+    /**
+     *  Make sure that we can add a Yarn to the list of Yarns crossing
+     *  another.  
+     *  @param y The id of a Yarn.  
+     *  @param z The Yarn that we want to add.  
+     *  @return The id of z.  
+     */
+    private int check(int y, Yarn z) {
+        int k = idOf(z);
+        if (k < 0) throw new IllegalArgumentException("Yarn " + z + " isn't in the same arrangement as " + yarns[y] + ".");
+        if (position[y*size+k] >= 0) throw new IllegalArgumentException("Yarn " + z + " already crosses " + yarns[y] + ".");
+        return k;
+    }
+
+    /**
+     *  Move the crossings of a Yarn to the middle of its window, so
+     *  there is room at both ends.  
+     *  @param y The id of a Yarn.  
+     */
+    private void recentre(int y) {
+        int n = size(y);
+        int start = y*width + (width - n)/2;
+        System.arraycopy(order,head[y],order,start,n);
+        head[y] = start;
+        tail[y] = start + n;
+        for (int p = head[y]; p < tail[y]; p++) position[y*size+order[p]] = p;
+        int m = joinTail[y] - joinHead[y];
+        start = y*width + (width - m)/2;
+        System.arraycopy(joins,joinHead[y],joins,start,m);
+        Arrays.fill(joins,y*width,start,null);
+        Arrays.fill(joins,start+m,(y+1)*width,null);
+        joinHead[y] = start;
+        joinTail[y] = start + m;
+    }
+
+    /**
+     *  Remove the first Yarn crossing a Yarn.  
+     *  @param y The id of a Yarn.  
+     */
+    void removeFirst(int y) {
+        if (size(y)==0) throw new NoSuchElementException();
+        position[y*size+order[head[y]]] = -1;
+        head[y]++;
+    }
+
+    /**
+     *  Remove the last Yarn crossing a Yarn.  
+     *  @param y The id of a Yarn.  
+     */
+    void removeLast(int y) {
+        if (size(y)==0) throw new NoSuchElementException();
+        tail[y]--;
+        position[y*size+order[tail[y]]] = -1;
+    }
+
+    /**
+     *  Remove a Yarn from the list of Yarns crossing a Yarn, if it's there.  
+     *  @param y The id of a Yarn.  
+     *  @param z The Yarn that we remove.  
+     */
+    void remove(int y, Yarn z) {
+        int i = indexOf(y,z);
+        if (i < 0) return;
+        position[y*size+idOf(z)] = -1;
+        for (int p = head[y]+i; p < tail[y]-1; p++) {
+            order[p] = order[p+1];
+            position[y*size+order[p]] = p;
+        }
+        tail[y]--;
+    }
+
+    /**
+     *  Swap two of the Yarns crossing a Yarn, along with their Joins.  
+     *  @param y The id of a Yarn.  
+     *  @param i The position of one of the Yarns that we swap.  
+     *  @param j The position of the other Yarn that we swap.  
+     */
+    void swap(int y, int i, int j) {
+        int p = head[y]+i;
+        int q = head[y]+j;
+        int k = order[p];
+        order[p] = order[q];
+        order[q] = k;
+        position[y*size+order[p]] = p;
+        position[y*size+order[q]] = q;
+        if (Math.max(i,j) < joinCount(y)) {
+            p = joinHead[y]+i;
+            q = joinHead[y]+j;
+            Join t = joins[p];
+            joins[p] = joins[q];
+            joins[q] = t;
+        }
+    }
+
+    /**
+     *  The number of Joins on a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @return The number of Joins on the Yarn with id y.  
+     */
+    int joinCount(int y) {
+        return joinTail[y] - joinHead[y];
+    }
+
+    /**
+     *  Find one of the Joins on a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @param i A position on the Yarn with id y.  
+     *  @return The Join in position i on the Yarn with id y.  
+     */
+    Join getJoin(int y, int i) {
+        if (i < 0 || i >= joinCount(y)) throw new IndexOutOfBoundsException("Position " + i + " on a Yarn with " + joinCount(y) + " Joins.");
+        return joins[joinHead[y]+i];
+    }
+
+    /**
+     *  Find the position of a Join on a Yarn.  
+     *  The Joins on a Yarn are in the same positions as the Yarns that
+     *  cross it, so we look up the other Yarn of j in {@link #position}.  
+     *  @param y The id of a Yarn.  
+     *  @param j A Join.  
+     *  @return The position of j on the Yarn with id y, or -1 if it isn't there.  
+     */
+    int indexOfJoin(int y, Join j) {
+        Yarn other = (j.getY1()==yarns[y]) ? j.getY2() : j.getY1();
+        int i = indexOf(y,other);
+        if (i < 0 || i >= joinCount(y)) return -1;
+        return joins[joinHead[y]+i].equals(j) ? i : -1;
+    }
+
+    /**
+     *  Add a Join to the beginning of the list of Joins on a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @param j The Join that we add.  
+     */
+    void addFirstJoin(int y, Join j) {
+        if (joinHead[y]==y*width) recentre(y);
+        joins[--joinHead[y]] = j;
+    }
+
+    /**
+     *  Add a Join to the end of the list of Joins on a Yarn.  
+     *  @param y The id of a Yarn.  
+     *  @param j The Join that we add.  
+     */
+    void addLastJoin(int y, Join j) {
+        if (joinTail[y]==(y+1)*width) recentre(y);
+        joins[joinTail[y]++] = j;
+    }
+
+    /**
+     *  Remove the first Join on a Yarn.  
+     *  @param y The id of a Yarn.  
+     */
+    void removeFirstJoin(int y) {
+        if (joinCount(y)==0) throw new NoSuchElementException();
+        joins[joinHead[y]++] = null;
+    }
+
+    /**
+     *  Remove the last Join on a Yarn.  
+     *  @param y The id of a Yarn.  
+     */
+    void removeLastJoin(int y) {
+        if (joinCount(y)==0) throw new NoSuchElementException();
+        joins[--joinTail[y]] = null;
+    }
+
+    /**
+     *  Remove a Join from the list of Joins on a Yarn, if it's there.  
+     *  @param y The id of a Yarn.  
+     *  @param j The Join that we remove.  
+     */
+    void removeJoin(int y, Join j) {
+        int i = indexOfJoin(y,j);
+        if (i < 0) return;
+        int p = joinHead[y]+i;
+        System.arraycopy(joins,p+1,joins,p,joinTail[y]-p-1);
+        joins[--joinTail[y]] = null;
+    }
+
+    /**
+     *  Output a String representation of this.  
+     *  @return A String containing the number of Yarns.  
+     */
+    public String toString() {
+        return "arrangement of " + size + " Yarns";
+    }
+
+} // end of class YarnArrangement